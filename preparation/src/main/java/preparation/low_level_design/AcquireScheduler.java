@@ -0,0 +1,27 @@
+package preparation.low_level_design;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class AcquireScheduler {
+    static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "rate-limiter-acquire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AcquireScheduler() {
+    }
+
+    static CompletableFuture<Void> completeAfter(final long waitNanos) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        if (waitNanos <= 0) {
+            future.complete(null);
+        } else {
+            INSTANCE.schedule(() -> future.complete(null), waitNanos, TimeUnit.NANOSECONDS);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,91 @@
+package preparation.low_level_design;
+
+/**
+ * Concurrency limit for one provider, adjusted by AIMD on latency: every completion that comes back within
+ * {@code TOLERANCE} times the best recent round trip adds {@code 1 / limit} (about one slot per round trip's worth of
+ * completions), while a slower completion or an error cuts the limit by {@code BACKOFF_RATIO}, at most once per round
+ * trip. Queueing at the provider therefore shrinks the window before it shows up as timeouts.
+ *
+ * <p>The best round trip is re-measured every {@code MIN_RTT_WINDOW} samples, so a provider that got permanently
+ * slower does not keep the limit pinned at the minimum. The limit is halved at the same time; otherwise the queue we
+ * built at the provider would be measured as its new normal.
+ */
+class AdaptiveConcurrencyLimit {
+    static final int DEFAULT_INITIAL_LIMIT = 16;
+    private static final double TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int MIN_RTT_WINDOW = 2000;
+
+    private final int maxLimit;
+    private double limit;
+    private int inFlight;
+    private long minRttNanos;
+    private long windowMinRttNanos;
+    private int windowSamples;
+    private long lastDecreaseAt;
+
+    AdaptiveConcurrencyLimit(final int maxLimit) {
+        this(Math.min(DEFAULT_INITIAL_LIMIT, maxLimit), maxLimit);
+    }
+
+    AdaptiveConcurrencyLimit(final int initialLimit, final int maxLimit) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= initial <= max");
+        }
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.minRttNanos = Long.MAX_VALUE;
+        this.windowMinRttNanos = Long.MAX_VALUE;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Gives back a permit that was not used for a request.
+     */
+    synchronized void cancel() {
+        inFlight--;
+    }
+
+    /**
+     * Gives back a permit with what the request measured; {@code dropped} is for errors and timeouts rather than a
+     * provider that answered "no".
+     */
+    synchronized void release(final long rttNanos, final boolean dropped) {
+        inFlight--;
+        windowMinRttNanos = Math.min(windowMinRttNanos, rttNanos);
+        if (++windowSamples >= MIN_RTT_WINDOW) {
+            minRttNanos = windowMinRttNanos;
+            windowMinRttNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+            // drain whatever queue we built at the provider, so the next window sees its real minimum
+            limit = Math.max(1, limit / 2);
+        }
+        minRttNanos = Math.min(minRttNanos, rttNanos);
+
+        final long now = System.nanoTime();
+        if (dropped || rttNanos > minRttNanos * TOLERANCE) {
+            if (now - lastDecreaseAt >= rttNanos) {
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                lastDecreaseAt = now;
+            }
+        } else if (inFlight + 1 >= (int) limit) {
+            // only grow while the current limit is actually being used
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
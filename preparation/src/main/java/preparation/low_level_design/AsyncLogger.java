@@ -1,74 +1,425 @@
 package preparation.low_level_design;
 
-import java.util.*;
+import java.util.Iterator;
+import java.util.Queue;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class AsyncLogger {
-    private final BlockingQueue<LogMessage> memory;
-    private static final int INTERVAL_IN_SECONDS = 2;
-    private final ScheduledExecutorService scheduler;
+
+    /**
+     * What {@link #log} does when the flusher has fallen behind and the ring is full (or filling up).
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for a free slot. Nothing is lost while the logger runs, but the caller stalls; once it has been shut
+         * down the message is dropped instead.
+         */
+        BLOCK,
+        /** Discard the message that does not fit. */
+        DROP_NEWEST,
+        /** Discard DEBUG once the ring is half full and INFO once it is three quarters full; ERROR blocks. */
+        DROP_LOWER_LEVELS_FIRST,
+        /** Keep one in {@code SAMPLE_RATE} messages once the ring is half full, and drop when it is full. */
+        SAMPLE
+    }
+
+    private final LogBuffer memory;
+    static final int DEFAULT_CAPACITY = 1 << 14;
+    static final int DEFAULT_BATCH_SIZE = 512;
+    static final long DEFAULT_MAX_LATENCY_MILLIS = 50;
+    static final int SAMPLE_RATE = 10;
+    // a blocked producer yields this many times, then parks for a doubling interval up to MAX_BLOCK_PARK_NANOS
+    static final int BLOCK_SPINS = 16;
+    static final long MAX_BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private final Thread flusher;
+    private final Queue<FlushBarrier> barriers;
+    private final int batchSize;
+    private final long maxLatencyNanos;
+    private volatile boolean running;
+    // set by the flusher on its way out; from then on every barrier is completed on the spot
+    private volatile boolean stopped;
+    private volatile boolean flusherParked;
     private final LogLevel minLogLevel;
+    private final LogAppender appender;
+    private final Consumer<LogMessage> writer;
+    private final OverflowPolicy overflowPolicy;
+    private final LongAdder droppedCounter;
+    private final LongAdder blockedCounter;
 
     public AsyncLogger(final LogLevel logLevel) {
-        this.memory = new LinkedBlockingQueue<>();
+        this(logLevel, DEFAULT_CAPACITY, new ConsoleLogAppender());
+    }
+
+    public AsyncLogger(final LogLevel logLevel, final LogAppender appender) {
+        this(logLevel, DEFAULT_CAPACITY, appender);
+    }
+
+    public AsyncLogger(final LogLevel logLevel, final int capacity, final LogAppender appender) {
+        this(logLevel, capacity, OverflowPolicy.BLOCK, appender);
+    }
+
+    public AsyncLogger(final LogLevel logLevel, final int capacity, final OverflowPolicy overflowPolicy,
+                       final LogAppender appender) {
+        this(logLevel, capacity, overflowPolicy, appender, DEFAULT_BATCH_SIZE, DEFAULT_MAX_LATENCY_MILLIS);
+    }
+
+    /**
+     * The flusher writes as soon as {@code batchSize} messages are waiting or the ring runs dry, and otherwise wakes
+     * up at least every {@code maxLatencyMillis}.
+     */
+    public AsyncLogger(final LogLevel logLevel, final int capacity, final OverflowPolicy overflowPolicy,
+                       final LogAppender appender, final int batchSize, final long maxLatencyMillis) {
+        this(logLevel, new LogRingBuffer(capacity), overflowPolicy, appender, batchSize, maxLatencyMillis);
+    }
+
+    /**
+     * Use {@link LogRingBuffer} for one shared ring or {@link PerThreadLogBuffer} to give every producer thread its
+     * own single-writer buffer.
+     */
+    public AsyncLogger(final LogLevel logLevel, final LogBuffer memory, final OverflowPolicy overflowPolicy,
+                       final LogAppender appender, final int batchSize, final long maxLatencyMillis) {
+        this.memory = memory;
+        this.overflowPolicy = overflowPolicy;
+        this.droppedCounter = new LongAdder();
+        this.blockedCounter = new LongAdder();
         this.minLogLevel = logLevel;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
-        this.scheduler.scheduleAtFixedRate(this::flush, INTERVAL_IN_SECONDS, INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+        this.appender = appender;
+        this.writer = appender::append;
+        this.barriers = new ConcurrentLinkedQueue<>();
+        this.batchSize = Math.min(batchSize, memory.capacity());
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.running = true;
+        this.flusher = new Thread(this::runFlusher, "async-logger-flusher");
+        this.flusher.start();
+    }
+
+    public boolean isEnabled(final LogLevel logLevel) {
+        return logLevel.getPriority() >= minLogLevel.getPriority();
     }
 
     public void log(final String message, final LogLevel logLevel) {
-        memory.offer(new LogMessage(logLevel, message, System.currentTimeMillis(), Thread.currentThread().getName()));
+        if (isEnabled(logLevel)) {
+            enqueue(logLevel, message, null);
+        }
     }
 
-    protected void flush() {
-        List<LogMessage> logsToWrite = new ArrayList<>();
-        memory.drainTo(logsToWrite);
-        for (LogMessage log : logsToWrite) {
-            if (log.logLevel.getPriority() >= this.minLogLevel.getPriority()) {
-                writeToDisk(log);
+    /**
+     * Each {@code {}} in the template is replaced by the next argument on the flusher thread, so arguments must not
+     * be mutated after the call.
+     */
+    public void log(final LogLevel logLevel, final String template, final Object arg) {
+        if (isEnabled(logLevel)) {
+            enqueue(logLevel, template, new Object[]{arg});
+        }
+    }
+
+    public void log(final LogLevel logLevel, final String template, final Object arg1, final Object arg2) {
+        if (isEnabled(logLevel)) {
+            enqueue(logLevel, template, new Object[]{arg1, arg2});
+        }
+    }
+
+    public void log(final LogLevel logLevel, final String template, final Object... args) {
+        if (isEnabled(logLevel)) {
+            enqueue(logLevel, template, args);
+        }
+    }
+
+    public void log(final LogLevel logLevel, final Supplier<String> messageSupplier) {
+        if (isEnabled(logLevel)) {
+            enqueue(logLevel, messageSupplier.get(), null);
+        }
+    }
+
+    private void enqueue(final LogLevel logLevel, final String message, final Object[] args) {
+        // after shutdown() nobody would ever write it
+        if (!running || shouldShed(logLevel)) {
+            droppedCounter.increment();
+            return;
+        }
+        final long timestamp = System.currentTimeMillis();
+        final String threadName = Thread.currentThread().getName();
+        if (memory.tryPublish(logLevel, message, args, timestamp, threadName)) {
+            if (flusherParked && memory.producerSize() >= batchSize) {
+                LockSupport.unpark(flusher);
+            }
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK
+                || (overflowPolicy == OverflowPolicy.DROP_LOWER_LEVELS_FIRST && logLevel == LogLevel.ERROR)) {
+            blockedCounter.increment();
+            int attempts = 0;
+            while (!memory.tryPublish(logLevel, message, args, timestamp, threadName)) {
+                if (!running) {
+                    // nobody is going to free a slot
+                    droppedCounter.increment();
+                    return;
+                }
+                // ring is full, wait for the flusher to free slots without burning a core if it has stalled
+                LockSupport.unpark(flusher);
+                if (++attempts <= BLOCK_SPINS) {
+                    Thread.yield();
+                } else {
+                    final long backoff = 1000L << Math.min(attempts - BLOCK_SPINS, 10);
+                    LockSupport.parkNanos(this, Math.min(MAX_BLOCK_PARK_NANOS, backoff));
+                }
             }
+        } else {
+            droppedCounter.increment();
         }
     }
 
-    private void writeToDisk(final LogMessage logMessage) {
-        System.out.printf("[%s] [%s] %s%n",
-                new Date(logMessage.timestamp),
-                logMessage.threadName,
-                logMessage.message
-        );
+    /**
+     * Decides before the ring is actually full whether a message should be given up on.
+     */
+    private boolean shouldShed(final LogLevel logLevel) {
+        switch (overflowPolicy) {
+            case DROP_LOWER_LEVELS_FIRST:
+                if (logLevel == LogLevel.DEBUG) {
+                    return memory.producerSize() >= memory.capacity() / 2;
+                }
+                if (logLevel == LogLevel.INFO) {
+                    return memory.producerSize() >= memory.capacity() / 4 * 3;
+                }
+                return false;
+            case SAMPLE:
+                return memory.producerSize() >= memory.capacity() / 2
+                        && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Messages discarded by the overflow policy.
+     */
+    public long getDroppedCount() {
+        return droppedCounter.sum();
+    }
+
+    /**
+     * Calls that found the ring full and had to wait.
+     */
+    public long getBlockedCount() {
+        return blockedCounter.sum();
+    }
+
+    /**
+     * Blocks until every message logged before this call has been handed to the appender, or returns straight away
+     * once the logger has been shut down.
+     */
+    public void flush() {
+        flushAsync().join();
+    }
+
+    public CompletableFuture<Void> flushAsync() {
+        final FlushBarrier barrier = new FlushBarrier(memory.mark());
+        barriers.offer(barrier);
+        LockSupport.unpark(flusher);
+        if (stopped) {
+            // the flusher may have swept the barriers before this one was offered
+            completeAllBarriers();
+        }
+        return barrier.future;
     }
 
+    private void runFlusher() {
+        while (running || memory.size() > 0) {
+            drainAndWrite();
+            completeBarriers();
+            if (running && memory.size() == 0 && barriers.isEmpty()) {
+                flusherParked = true;
+                if (memory.size() == 0) {
+                    LockSupport.parkNanos(this, maxLatencyNanos);
+                }
+                flusherParked = false;
+            }
+        }
+        stopped = true;
+        // whatever a producer managed to publish while running was being switched off
+        drainAndWrite();
+        completeAllBarriers();
+    }
+
+    private void drainAndWrite() {
+        try {
+            while (memory.drain(writer, batchSize) > 0) {
+                appender.endOfBatch();
+            }
+        } catch (RuntimeException e) {
+            // never let a failing appender kill the flusher
+            e.printStackTrace();
+        }
+    }
+
+    private void completeBarriers() {
+        final Iterator<FlushBarrier> iterator = barriers.iterator();
+        while (iterator.hasNext()) {
+            final FlushBarrier barrier = iterator.next();
+            if (barrier.reached.getAsBoolean()) {
+                iterator.remove();
+                barrier.future.complete(null);
+            }
+        }
+    }
+
+    private void completeAllBarriers() {
+        for (FlushBarrier barrier; (barrier = barriers.poll()) != null; ) {
+            barrier.future.complete(null);
+        }
+    }
+
+    /**
+     * Writes what has been logged so far and closes the appender. Later calls to {@code log} are dropped and counted,
+     * and {@link #flush()} no longer waits.
+     */
     public void shutdown() {
-        scheduler.shutdown();
-        flush();
+        running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appender.close();
     }
-}
 
-class LogMessage {
-    final LogLevel logLevel;
-    final String message;
-    final long timestamp;
-    final String threadName;
+    static class FlushBarrier {
+        final BooleanSupplier reached;
+        final CompletableFuture<Void> future;
 
-    public LogMessage(final LogLevel logLevel, final String message, final long timestamp, final String threadName) {
-        this.logLevel = logLevel;
-        this.message = message;
-        this.timestamp = timestamp;
-        this.threadName = threadName;
+        FlushBarrier(final BooleanSupplier reached) {
+            this.reached = reached;
+            this.future = new CompletableFuture<>();
+        }
     }
 }
 
-enum LogLevel {
-    DEBUG(1),
-    INFO(2),
-    ERROR(3);
+/**
+ * Where {@link AsyncLogger#log} leaves messages for the flusher. Any number of producers, exactly one consumer.
+ */
+interface LogBuffer {
+    /**
+     * Returns false without publishing anything when the caller's buffer is full.
+     */
+    boolean tryPublish(LogLevel logLevel, String message, Object[] args, long timestamp, String threadName);
+
+    /**
+     * Consumer side only. Hands up to {@code maxBatch} messages to {@code handler}; the slots must not be retained
+     * after the call returns. A message the handler throws on still counts as consumed, so a bad message is never
+     * handed out again; the exception propagates once the position has been saved.
+     */
+    int drain(Consumer<LogMessage> handler, int maxBatch);
+
+    /**
+     * Messages waiting for the consumer, across all producers.
+     */
+    int size();
+
+    /**
+     * Messages ahead of the calling thread's next publish; compared against {@link #capacity()} for overflow.
+     */
+    int producerSize();
+
+    int capacity();
+
+    /**
+     * Returns a condition that turns true once everything published before this call has been drained.
+     */
+    BooleanSupplier mark();
+}
+
+/**
+ * Multi-producer / single-consumer ring of preallocated {@link LogMessage} slots, in the style of the Disruptor.
+ * Producers claim a sequence with a CAS, fill the slot in place and publish it by writing the sequence into
+ * {@code published}. The consumer walks published slots in order and hands the whole batch back at once.
+ */
+class LogRingBuffer implements LogBuffer {
+    private final LogMessage[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed;
+    private volatile long consumed;
+
+    LogRingBuffer(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.slots = new LogMessage[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new LogMessage();
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+        this.claimed = new AtomicLong();
+    }
+
+    @Override
+    public boolean tryPublish(final LogLevel logLevel, final String message, final Object[] args, final long timestamp,
+                              final String threadName) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        final int index = (int) sequence & mask;
+        slots[index].set(logLevel, message, args, timestamp, threadName);
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    @Override
+    public int drain(final Consumer<LogMessage> handler, final int maxBatch) {
+        long next = consumed;
+        int count = 0;
+        try {
+            while (count < maxBatch) {
+                final int index = (int) next & mask;
+                if (published.get(index) != next) {
+                    break;
+                }
+                final LogMessage message = slots[index];
+                next++;
+                count++;
+                try {
+                    handler.accept(message);
+                } finally {
+                    message.clear();
+                }
+            }
+        } finally {
+            consumed = next;
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        return (int) (claimed.get() - consumed);
+    }
+
+    @Override
+    public int producerSize() {
+        return size();
+    }
 
-    private final int priority;
-    LogLevel(int priority) {
-        this.priority = priority;
+    @Override
+    public int capacity() {
+        return slots.length;
     }
 
-    public int getPriority() {
-        return this.priority;
+    @Override
+    public BooleanSupplier mark() {
+        final long target = claimed.get();
+        return () -> consumed >= target;
     }
 }
@@ -0,0 +1,157 @@
+package preparation.low_level_design;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary segment format, read back by {@link LogDecoder}.
+ *
+ * <pre>
+ * segment  := MAGIC baseTimestamp:long record*
+ * record   := THREAD id:int name:string
+ *           | TEMPLATE id:int template:string
+ *           | MESSAGE timestampDelta:int level:byte threadId:int templateId:int argCount:byte arg*
+ *           | LITERAL timestampDelta:int level:byte threadId:int text:string
+ * arg      := tag:byte raw-bytes
+ * string   := length:int utf8-bytes
+ * </pre>
+ *
+ * Thread names and templates are written once per segment, the first time they are used; after that a message is a
+ * fixed 15-byte header plus the raw argument bytes. Timestamps are deltas to the previous record. The argument count
+ * is one unsigned byte, so a message with more than {@link #MAX_ARGS} arguments is formatted here and written as a
+ * LITERAL instead.
+ */
+class BinaryLogEncoder implements LogEncoder {
+    static final byte[] MAGIC = "ALOGBIN1".getBytes(StandardCharsets.US_ASCII);
+    static final int MAX_ARGS = 0xFF;
+
+    static final byte THREAD = 1;
+    static final byte TEMPLATE = 2;
+    static final byte MESSAGE = 3;
+    static final byte LITERAL = 4;
+
+    static final byte ARG_NULL = 0;
+    static final byte ARG_BOOLEAN = 1;
+    static final byte ARG_INT = 2;
+    static final byte ARG_LONG = 3;
+    static final byte ARG_FLOAT = 4;
+    static final byte ARG_DOUBLE = 5;
+    static final byte ARG_STRING = 6;
+
+    private final Map<String, Integer> threadIds = new HashMap<>();
+    private final Map<String, Integer> templateIds = new HashMap<>();
+    private long lastTimestamp;
+
+    @Override
+    public void startSegment(final ByteBuffer header, final long openedAt) {
+        header.put(MAGIC).putLong(openedAt);
+        threadIds.clear();
+        templateIds.clear();
+        lastTimestamp = openedAt;
+    }
+
+    @Override
+    public String fileExtension() {
+        return "bin";
+    }
+
+    /**
+     * New dictionary ids are only remembered once the whole message fits, so a {@link java.nio.BufferOverflowException}
+     * half way through leaves the dictionary as it was and the retry writes the definitions again.
+     */
+    @Override
+    public void encode(final LogMessage message, final ByteBuffer buffer) {
+        Integer threadId = threadIds.get(message.threadName);
+        final boolean newThread = threadId == null;
+        if (newThread) {
+            threadId = threadIds.size();
+            buffer.put(THREAD).putInt(threadId);
+            putString(buffer, message.threadName);
+        }
+
+        final boolean literal = message.args == null || message.args.length > MAX_ARGS;
+        Integer templateId = null;
+        boolean newTemplate = false;
+        if (!literal) {
+            templateId = templateIds.get(message.message);
+            newTemplate = templateId == null;
+            if (newTemplate) {
+                templateId = templateIds.size();
+                buffer.put(TEMPLATE).putInt(templateId);
+                putString(buffer, message.message);
+            }
+        }
+
+        buffer.put(literal ? LITERAL : MESSAGE)
+                .putInt((int) (message.timestamp - lastTimestamp))
+                .put((byte) message.logLevel.ordinal())
+                .putInt(threadId);
+        if (message.args == null) {
+            putString(buffer, message.message);
+        } else if (literal) {
+            // the length goes in front once the formatted text has been written
+            final int lengthAt = buffer.position();
+            buffer.putInt(0);
+            TextLogEncoder.putFormatted(buffer, message.message, message.args);
+            buffer.putInt(lengthAt, buffer.position() - lengthAt - 4);
+        } else {
+            buffer.putInt(templateId).put((byte) message.args.length);
+            for (Object arg : message.args) {
+                putArg(buffer, arg);
+            }
+        }
+
+        lastTimestamp = message.timestamp;
+        if (newThread) {
+            threadIds.put(message.threadName, threadId);
+        }
+        if (newTemplate) {
+            templateIds.put(message.message, templateId);
+        }
+    }
+
+    private static void putArg(final ByteBuffer buffer, final Object arg) {
+        if (arg == null) {
+            buffer.put(ARG_NULL);
+        } else if (arg instanceof Boolean) {
+            buffer.put(ARG_BOOLEAN).put((byte) ((Boolean) arg ? 1 : 0));
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            buffer.put(ARG_INT).putInt(((Number) arg).intValue());
+        } else if (arg instanceof Long) {
+            buffer.put(ARG_LONG).putLong((Long) arg);
+        } else if (arg instanceof Float) {
+            buffer.put(ARG_FLOAT).putFloat((Float) arg);
+        } else if (arg instanceof Double) {
+            buffer.put(ARG_DOUBLE).putDouble((Double) arg);
+        } else {
+            buffer.put(ARG_STRING);
+            putString(buffer, LogEncoder.render(arg));
+        }
+    }
+
+    private static void putString(final ByteBuffer buffer, final String value) {
+        buffer.putInt(utf8Length(value));
+        TextLogEncoder.putUtf8(buffer, value);
+    }
+
+    static int utf8Length(final CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
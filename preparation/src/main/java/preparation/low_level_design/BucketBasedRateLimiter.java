@@ -0,0 +1,54 @@
+package preparation.low_level_design;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+class BucketBasedRateLimiter implements RateLimiter {
+
+    private final Map<String, ClientBucket> map;
+    private final int refillRatePerSec;
+    private final int maxTokens;
+    private final RateLimiterMetrics metrics;
+
+    public BucketBasedRateLimiter(final int refillRatePerSec, final int maxTokens) {
+        this(refillRatePerSec, maxTokens, new RateLimiterMetrics());
+    }
+
+    public BucketBasedRateLimiter(final int refillRatePerSec, final int maxTokens, final RateLimiterMetrics metrics) {
+        this.map = new ConcurrentHashMap<>();
+        this.refillRatePerSec = refillRatePerSec;
+        this.maxTokens = maxTokens;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean tryAcquire(String clientId, int permits) {
+        checkPermits(permits);
+        final boolean allowed = bucket(clientId).isAllowed(permits);
+        metrics.record(clientId, allowed);
+        return allowed;
+    }
+
+    @Override
+    public CompletableFuture<Void> acquire(String clientId, int permits) {
+        checkPermits(permits);
+        final long waitNanos = bucket(clientId).reserve(permits);
+        metrics.recordReservation(clientId, waitNanos);
+        return AcquireScheduler.completeAfter(waitNanos);
+    }
+
+    public RateLimiterMetrics getMetrics() {
+        return metrics;
+    }
+
+    private ClientBucket bucket(final String clientId) {
+        return map.computeIfAbsent(clientId, id -> new ClientBucket(refillRatePerSec, maxTokens));
+    }
+
+    private void checkPermits(final int permits) {
+        if (permits <= 0 || permits > maxTokens) {
+            throw new IllegalArgumentException("permits must be between 1 and " + maxTokens + " but was " + permits);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package preparation.low_level_design;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Collects the encoded batch in one reusable buffer and hands it to {@link #write(ByteBuffer)} in a single call.
+ */
+abstract class ByteBufferAppender implements LogAppender {
+    protected final LogEncoder encoder;
+    protected ByteBuffer buffer;
+
+    ByteBufferAppender(final LogEncoder encoder, final ByteBuffer buffer) {
+        this.encoder = encoder;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void append(final LogMessage message) {
+        append(message, true);
+    }
+
+    /**
+     * A message the encoder fails on is rolled back to where its record started and, once, replaced by a placeholder
+     * record, so one bad message costs one line and not the batch.
+     */
+    private void append(final LogMessage message, final boolean substituteOnError) {
+        final int start = buffer.position();
+        try {
+            encoder.encode(message, buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            if (start > 0) {
+                writeBuffer();
+            } else {
+                // a single message larger than the whole buffer
+                buffer = buffer.isDirect()
+                        ? ByteBuffer.allocateDirect(buffer.capacity() * 2)
+                        : ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+            append(message, substituteOnError);
+        } catch (RuntimeException e) {
+            buffer.position(start);
+            if (substituteOnError) {
+                final LogMessage placeholder = new LogMessage();
+                placeholder.set(message.logLevel, "[unencodable log message \"" + message.message + "\": " + e + "]",
+                        null, message.timestamp, String.valueOf(message.threadName));
+                append(placeholder, false);
+            }
+        }
+    }
+
+    @Override
+    public void endOfBatch() {
+        if (buffer.position() > 0) {
+            writeBuffer();
+        }
+    }
+
+    private void writeBuffer() {
+        buffer.flip();
+        try {
+            write(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    protected abstract void write(ByteBuffer bytes) throws IOException;
+}
@@ -0,0 +1,276 @@
+package preparation.low_level_design;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import preparation.low_level_design.NotificationService.FailureReason;
+import preparation.low_level_design.NotificationService.NotificationJob;
+
+/**
+ * Circuit breakers for the dispatcher, one per channel (the provider) and one per recipient on that channel. After
+ * {@code failureThreshold} consecutive failures a breaker opens and jobs behind it are parked instead of being sent
+ * or retried, so a dead provider stops costing worker time and retry attempts. The channel breaker only counts
+ * requests that failed outright: a provider that answers "no" is up, so a rejection counts against the recipient and
+ * as a success for the channel.
+ *
+ * <p>Once the open period ends the breaker goes half-open and one parked job is released as a probe. Its success
+ * closes the breaker and releases everything parked behind it; its failure reopens the breaker for twice as long.
+ * Breakers only exist while something is failing: a closed breaker with nothing parked is removed on the next
+ * success, and a closed or half-open one with nothing parked and no probe in flight is removed once it has seen no
+ * failure for {@code idleMillis}, so recipients that fail for good do not pile up.
+ */
+class CircuitBreakers {
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_MILLIS = 5_000;
+    static final long MAX_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final long DEFAULT_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ConcurrentHashMap<String, Breaker> breakers;
+    private final HashedWheelTimer timer;
+    private final Consumer<NotificationJob> release;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long idleMillis;
+
+    /**
+     * {@code release} takes parked jobs back, typically by putting them on the job queue again.
+     */
+    CircuitBreakers(final HashedWheelTimer timer, final Consumer<NotificationJob> release) {
+        this(timer, release, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS);
+    }
+
+    CircuitBreakers(final HashedWheelTimer timer, final Consumer<NotificationJob> release, final int failureThreshold,
+                    final long openMillis) {
+        this(timer, release, failureThreshold, openMillis, DEFAULT_IDLE_MILLIS);
+    }
+
+    CircuitBreakers(final HashedWheelTimer timer, final Consumer<NotificationJob> release, final int failureThreshold,
+                    final long openMillis, final long idleMillis) {
+        this.breakers = new ConcurrentHashMap<>();
+        this.timer = timer;
+        this.release = release;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * True if the job may be sent now. Otherwise it has been parked behind an open breaker and the caller must let go
+     * of it.
+     */
+    boolean admit(final NotificationJob job) {
+        final Breaker channel = breakers.get(channelKey(job));
+        if (channel != null && !channel.admit(job)) {
+            return false;
+        }
+        final Breaker recipient = breakers.get(recipientKey(job));
+        if (recipient != null && !recipient.admit(job)) {
+            if (channel != null) {
+                // the job is parked after all, it cannot be the channel's probe
+                channel.cancelProbe(job);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parks a failed job if its breaker is open, so it waits for the breaker instead of using up a retry.
+     */
+    boolean parkIfOpen(final NotificationJob job) {
+        final Breaker channel = breakers.get(channelKey(job));
+        if (channel != null && channel.parkIfOpen(job)) {
+            return true;
+        }
+        final Breaker recipient = breakers.get(recipientKey(job));
+        return recipient != null && recipient.parkIfOpen(job);
+    }
+
+    void onSuccess(final NotificationJob job) {
+        succeeded(channelKey(job));
+        succeeded(recipientKey(job));
+    }
+
+    void onFailure(final NotificationJob job, final FailureReason reason) {
+        if (reason == FailureReason.SEND_ERROR) {
+            breakers.computeIfAbsent(channelKey(job), Breaker::new).onFailure(job);
+        } else {
+            // the provider answered; this also settles a channel probe that came back rejected
+            succeeded(channelKey(job));
+        }
+        breakers.computeIfAbsent(recipientKey(job), Breaker::new).onFailure(job);
+    }
+
+    int parkedCount() {
+        int parked = 0;
+        for (Breaker breaker : breakers.values()) {
+            parked += breaker.parked.size();
+        }
+        return parked;
+    }
+
+    int openCount() {
+        int open = 0;
+        for (Breaker breaker : breakers.values()) {
+            open += breaker.state == State.CLOSED ? 0 : 1;
+        }
+        return open;
+    }
+
+    private void succeeded(final String key) {
+        final Breaker breaker = breakers.get(key);
+        if (breaker != null && breaker.onSuccess()) {
+            breakers.remove(key, breaker);
+        }
+    }
+
+    private static String channelKey(final NotificationJob job) {
+        return job.getChannel().name();
+    }
+
+    private static String recipientKey(final NotificationJob job) {
+        return job.getChannel().name() + '/' + job.getRecipient();
+    }
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN;
+    }
+
+    /**
+     * All transitions happen under the breaker's own monitor; breakers for different keys never contend.
+     *
+     * <p>While it is in the map a breaker checks every {@code idleMillis} whether it has gone idle. A retired breaker
+     * is closed for good, so a caller that looked it up just before it was removed never parks a job in it.
+     */
+    class Breaker {
+        final String key;
+        final Queue<NotificationJob> parked;
+        volatile State state;
+        private int consecutiveFailures;
+        private long currentOpenMillis;
+        private NotificationJob probe;
+        private long lastFailureNanos;
+        private boolean retired;
+
+        Breaker(final String key) {
+            this.key = key;
+            this.parked = new ConcurrentLinkedQueue<>();
+            this.state = State.CLOSED;
+            this.currentOpenMillis = openMillis;
+            this.lastFailureNanos = System.nanoTime();
+            timer.schedule(this::retireIfIdle, idleMillis, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized boolean admit(final NotificationJob job) {
+            if (state == State.CLOSED || probe == job) {
+                return true;
+            }
+            if (state == State.HALF_OPEN && probe == null) {
+                probe = job;
+                return true;
+            }
+            parked.offer(job);
+            return false;
+        }
+
+        synchronized void cancelProbe(final NotificationJob job) {
+            if (probe == job) {
+                probe = null;
+            }
+        }
+
+        synchronized boolean parkIfOpen(final NotificationJob job) {
+            if (state == State.CLOSED || probe == job) {
+                return false;
+            }
+            parked.offer(job);
+            return true;
+        }
+
+        /**
+         * Returns true if the breaker is closed with nothing parked, in which case it has been retired and must be
+         * dropped.
+         */
+        boolean onSuccess() {
+            synchronized (this) {
+                consecutiveFailures = 0;
+                probe = null;
+                state = State.CLOSED;
+                currentOpenMillis = openMillis;
+            }
+            for (NotificationJob job; (job = parked.poll()) != null; ) {
+                release.accept(job);
+            }
+            synchronized (this) {
+                if (retired) {
+                    return false;
+                }
+                if (state != State.CLOSED || !parked.isEmpty()) {
+                    return false;
+                }
+                // a caller still holding this breaker can neither open it nor park on it from here on
+                retired = true;
+                return true;
+            }
+        }
+
+        synchronized void onFailure(final NotificationJob job) {
+            if (retired) {
+                // lost the race with a removal, the next failure starts a new breaker
+                return;
+            }
+            lastFailureNanos = System.nanoTime();
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN && probe == job) {
+                probe = null;
+                currentOpenMillis = Math.min(currentOpenMillis * 2, MAX_OPEN_MILLIS);
+                open();
+            } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+                open();
+            }
+        }
+
+        private void open() {
+            state = State.OPEN;
+            System.out.println("Circuit open for " + key + " for " + currentOpenMillis + "ms");
+            timer.schedule(this::halfOpen, currentOpenMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void halfOpen() {
+            final NotificationJob next;
+            synchronized (this) {
+                if (state != State.OPEN) {
+                    return;
+                }
+                state = State.HALF_OPEN;
+                next = parked.poll();
+                probe = next;
+            }
+            if (next != null) {
+                release.accept(next);
+            }
+        }
+
+        private void retireIfIdle() {
+            synchronized (this) {
+                if (retired) {
+                    return;
+                }
+                final boolean idle = state != State.OPEN && probe == null && parked.isEmpty()
+                        && System.nanoTime() - lastFailureNanos >= TimeUnit.MILLISECONDS.toNanos(idleMillis);
+                if (!idle) {
+                    timer.schedule(this::retireIfIdle, idleMillis, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                retired = true;
+                state = State.CLOSED;
+            }
+            breakers.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package preparation.low_level_design;
+
+import java.util.concurrent.TimeUnit;
+
+class ClientBucket {
+    private final int refillRatePerSec;
+    private final int maxTokens;
+    private double currentTokens;
+    private long lastRefillTime;
+
+    public ClientBucket(int refillRatePerSec, int maxTokens) {
+        this.refillRatePerSec = refillRatePerSec;
+        this.maxTokens = maxTokens;
+        this.currentTokens = maxTokens;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    public synchronized boolean isAllowed() {
+        return isAllowed(1);
+    }
+
+    public synchronized boolean isAllowed(final int permits) {
+        refill();
+        if (currentTokens >= permits) {
+            currentTokens -= permits;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes the permits unconditionally, letting the balance go negative, and returns how long the caller has to
+     * wait until that debt is refilled. Later callers queue up behind the debt, so waiters are served in order.
+     */
+    public synchronized long reserve(final int permits) {
+        refill();
+        currentTokens -= permits;
+        if (currentTokens >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-currentTokens * TimeUnit.SECONDS.toNanos(1) / refillRatePerSec);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        long nanosSinceLast = now - lastRefillTime;
+        double tokensToAdd = (nanosSinceLast / 1_000_000_000.0) * refillRatePerSec;
+
+        if (tokensToAdd > 0) {
+            currentTokens = Math.min(maxTokens, currentTokens + tokensToAdd);
+            lastRefillTime = now;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package preparation.low_level_design;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import preparation.low_level_design.TinyUrlService.Base62Service;
+import preparation.low_level_design.TinyUrlService.UrlStore;
+
+/**
+ * Memory-lean {@link UrlStore} for very large link counts: no object per link and no long URL used as a map key.
+ *
+ * <ul>
+ *   <li>Long URLs are appended once, as length-prefixed UTF-8, to an arena of large {@code byte[]} chunks.</li>
+ *   <li>A short code decodes to its id, the id to its allocation sequence, and the sequence indexes paged arrays
+ *   holding the arena offset, so a redirect is two array reads and a copy out of the arena.</li>
+ *   <li>The reverse direction is an open-addressing table of 64-bit fingerprints of the long URL next to the id;
+ *   a fingerprint match is confirmed against the bytes in the arena.</li>
+ *   <li>A link shortened with a TTL has its last access and TTL packed into one {@code long} in paged arrays next
+ *   to the offsets; a page is only allocated once a link in it expires. Links shortened without a TTL never
+ *   expire.</li>
+ * </ul>
+ *
+ * <p>The arena is append-only, so an expired link keeps its bytes. Shortening the same URL again gives it a new
+ * code that reuses them, and the same slot in the fingerprint table.
+ *
+ * <p>That is roughly the URL bytes plus 40 bytes per link, against a few hundred for the map-based
+ * {@link TinyUrlService.DataStore}, and nothing for the collector to trace but a few large arrays. Lookups do not
+ * lock; creating a link takes the store's monitor.
+ */
+class CompactUrlStore implements UrlStore {
+    static final int CHUNK_BITS = 24;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int PAGE_BITS = 16;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int INITIAL_TABLE_CAPACITY = 1 << 16;
+    private static final int LENGTH_BYTES = 4;
+
+    private final ShortCodeIdAllocator idAllocator;
+
+    // arena, append-only; a chunk's bytes are written before its offset is published
+    private volatile byte[][] chunks;
+    private long arenaEnd;
+
+    // sequence -> arena offset + 1, 0 for none
+    private volatile AtomicLongArray[] offsetPages;
+
+    // sequence -> last access in epoch seconds << 32 | ttl, 0 for a link that does not expire
+    private volatile AtomicLongArray[] leasePages;
+
+    // fingerprint -> id; the id is written before the fingerprint, and a full table is copied, never resized in place
+    private volatile FingerprintTable table;
+
+    CompactUrlStore() {
+        this(new ShortCodeIdAllocator());
+    }
+
+    CompactUrlStore(final ShortCodeIdAllocator idAllocator) {
+        this.idAllocator = idAllocator;
+        this.chunks = new byte[][] {new byte[CHUNK_SIZE]};
+        this.offsetPages = new AtomicLongArray[0];
+        this.leasePages = new AtomicLongArray[0];
+        this.table = new FingerprintTable(INITIAL_TABLE_CAPACITY);
+    }
+
+    @Override
+    public String getShortUrl(final String longUrl) {
+        return shorten(longUrl, 0);
+    }
+
+    @Override
+    public String getShortUrl(final String longUrl, final int ttl) {
+        if (ttl < 1) {
+            throw new IllegalArgumentException("Invalid ttl " + ttl);
+        }
+        return shorten(longUrl, ttl);
+    }
+
+    /**
+     * A live link keeps its code; with a TTL it takes the new one, without it only counts as an access.
+     */
+    private String shorten(final String longUrl, final int ttl) {
+        final byte[] bytes = longUrl.getBytes(StandardCharsets.UTF_8);
+        final long fingerprint = fingerprint(bytes);
+        final int now = TinyUrlService.URL.epochSecond();
+        long id = find(table, fingerprint, bytes, now);
+        if (id != 0 && ttl == 0 && !touch(idAllocator.sequenceOf(id), now)) {
+            // expired since the lookup
+            id = 0;
+        }
+        if (id == 0) {
+            id = insert(fingerprint, bytes, ttl, now);
+        } else if (ttl > 0) {
+            setLease(idAllocator.sequenceOf(id), now, ttl);
+        }
+        return Base62Service.encode(id);
+    }
+
+    @Override
+    public String getLongUrl(final String shortUrl) {
+        // codes are never padded: "0abc" would otherwise be another name for "abc"
+        if (!Base62Service.isValid(shortUrl) || (shortUrl.length() > 1 && shortUrl.charAt(0) == '0')) {
+            throw new IllegalArgumentException("Invalid shortUrl");
+        }
+        final long id = Base62Service.decode(shortUrl);
+        final long offset = offsetOf(id);
+        if (offset < 0 || !touch(idAllocator.sequenceOf(id), TinyUrlService.URL.epochSecond())) {
+            throw new IllegalArgumentException("Invalid shortUrl");
+        }
+        final byte[] chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        final int position = (int) offset & (CHUNK_SIZE - 1);
+        return new String(chunk, position + LENGTH_BYTES, readLength(chunk, position), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Distinct long URLs stored, expired ones included.
+     */
+    int size() {
+        return table.size;
+    }
+
+    long arenaBytes() {
+        return arenaEnd;
+    }
+
+    private synchronized long insert(final long fingerprint, final byte[] bytes, final int ttl, final int now) {
+        final FingerprintTable current = table;
+        final int mask = current.capacity() - 1;
+        for (int slot = (int) fingerprint & mask; current.fingerprints.get(slot) != 0; slot = (slot + 1) & mask) {
+            if (current.fingerprints.get(slot) != fingerprint) {
+                continue;
+            }
+            final long existing = current.ids.get(slot);
+            final long offset = offsetOf(existing);
+            if (!matches(offset, bytes)) {
+                continue;
+            }
+            if (isLive(idAllocator.sequenceOf(existing), now)) {
+                // somebody created it since the lock-free lookup
+                return existing;
+            }
+            // expired: a new code for the same bytes, in the same slot
+            final long id = idAllocator.nextId();
+            setOffset(idAllocator.sequenceOf(id), offset);
+            setLease(idAllocator.sequenceOf(id), now, ttl);
+            current.ids.set(slot, id);
+            return id;
+        }
+        final long id = idAllocator.nextId();
+        final long offset = append(bytes);
+        setOffset(idAllocator.sequenceOf(id), offset);
+        setLease(idAllocator.sequenceOf(id), now, ttl);
+        if (current.size + 1 > current.capacity() / 2) {
+            table = current.grow();
+        }
+        table.put(fingerprint, id);
+        return id;
+    }
+
+    /**
+     * Id of the live link for these bytes, or 0.
+     */
+    private long find(final FingerprintTable current, final long fingerprint, final byte[] bytes, final int now) {
+        final int mask = current.capacity() - 1;
+        for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+            final long stored = current.fingerprints.get(slot);
+            if (stored == 0) {
+                return 0;
+            }
+            if (stored == fingerprint) {
+                final long id = current.ids.get(slot);
+                if (matches(offsetOf(id), bytes)) {
+                    return isLive(idAllocator.sequenceOf(id), now) ? id : 0;
+                }
+            }
+        }
+    }
+
+    private boolean matches(final long offset, final byte[] bytes) {
+        if (offset < 0) {
+            return false;
+        }
+        final byte[] chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        final int position = (int) offset & (CHUNK_SIZE - 1);
+        final int length = readLength(chunk, position);
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk[position + LENGTH_BYTES + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Arena offset of the URL stored under {@code id}, or -1.
+     */
+    private long offsetOf(final long id) {
+        if (!idAllocator.owns(id)) {
+            return -1;
+        }
+        final long sequence = idAllocator.sequenceOf(id);
+        final AtomicLongArray[] pages = offsetPages;
+        final long page = sequence >>> PAGE_BITS;
+        if (page >= pages.length || pages[(int) page] == null) {
+            return -1;
+        }
+        return pages[(int) page].get((int) sequence & (PAGE_SIZE - 1)) - 1;
+    }
+
+    private void setOffset(final long sequence, final long offset) {
+        final int page = (int) (sequence >>> PAGE_BITS);
+        AtomicLongArray[] pages = offsetPages;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        if (pages[page] == null) {
+            pages[page] = new AtomicLongArray(PAGE_SIZE);
+        }
+        pages[page].set((int) sequence & (PAGE_SIZE - 1), offset + 1);
+        offsetPages = pages;
+    }
+
+    private boolean isLive(final long sequence, final int now) {
+        final long lease = leaseOf(sequence);
+        return lease == 0 || now < (long) (int) (lease >>> 32) + (int) lease;
+    }
+
+    private long leaseOf(final long sequence) {
+        final AtomicLongArray[] pages = leasePages;
+        final long page = sequence >>> PAGE_BITS;
+        if (page >= pages.length || pages[(int) page] == null) {
+            return 0;
+        }
+        return pages[(int) page].get((int) sequence & (PAGE_SIZE - 1));
+    }
+
+    /**
+     * Records an access at {@code now}, returning false if the link had already expired. Like
+     * {@link TinyUrlService.URL#touch}, hits within the same second write nothing.
+     */
+    private boolean touch(final long sequence, final int now) {
+        final AtomicLongArray[] pages = leasePages;
+        final long page = sequence >>> PAGE_BITS;
+        if (page >= pages.length || pages[(int) page] == null) {
+            return true;
+        }
+        final AtomicLongArray leases = pages[(int) page];
+        final int index = (int) sequence & (PAGE_SIZE - 1);
+        while (true) {
+            final long lease = leases.get(index);
+            if (lease == 0) {
+                return true;
+            }
+            final int accessedAt = (int) (lease >>> 32);
+            if (now >= (long) accessedAt + (int) lease) {
+                return false;
+            }
+            // a lost race is either another touch or a new TTL, both fresher than this access
+            if (accessedAt == now || leases.compareAndSet(index, lease, (long) now << 32 | (lease & 0xffffffffL))) {
+                return true;
+            }
+        }
+    }
+
+    private void setLease(final long sequence, final int now, final int ttl) {
+        if (ttl == 0) {
+            // sequences are never reused, so there is nothing to clear
+            return;
+        }
+        leasePage(sequence).set((int) sequence & (PAGE_SIZE - 1), (long) now << 32 | ttl);
+    }
+
+    private synchronized AtomicLongArray leasePage(final long sequence) {
+        final int page = (int) (sequence >>> PAGE_BITS);
+        AtomicLongArray[] pages = leasePages;
+        if (page >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(page + 1, pages.length * 2));
+        }
+        if (pages[page] == null) {
+            pages[page] = new AtomicLongArray(PAGE_SIZE);
+            leasePages = pages;
+        }
+        return pages[page];
+    }
+
+    private long append(final byte[] bytes) {
+        final int recordLength = LENGTH_BYTES + bytes.length;
+        if (recordLength > CHUNK_SIZE) {
+            throw new IllegalArgumentException("URL of " + bytes.length + " bytes does not fit in an arena chunk");
+        }
+        byte[][] current = chunks;
+        if ((arenaEnd & (CHUNK_SIZE - 1)) + recordLength > CHUNK_SIZE) {
+            // records never straddle chunks
+            arenaEnd = (long) current.length << CHUNK_BITS;
+        }
+        final int chunkIndex = (int) (arenaEnd >>> CHUNK_BITS);
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[chunkIndex] = new byte[CHUNK_SIZE];
+            chunks = current;
+        }
+        final byte[] chunk = current[chunkIndex];
+        final int position = (int) arenaEnd & (CHUNK_SIZE - 1);
+        chunk[position] = (byte) (bytes.length >>> 24);
+        chunk[position + 1] = (byte) (bytes.length >>> 16);
+        chunk[position + 2] = (byte) (bytes.length >>> 8);
+        chunk[position + 3] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, chunk, position + LENGTH_BYTES, bytes.length);
+        final long offset = arenaEnd;
+        arenaEnd += recordLength;
+        return offset;
+    }
+
+    private static int readLength(final byte[] chunk, final int position) {
+        return (chunk[position] & 0xff) << 24 | (chunk[position + 1] & 0xff) << 16
+                | (chunk[position + 2] & 0xff) << 8 | chunk[position + 3] & 0xff;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes with a murmur finalizer, never 0 since that marks a free slot.
+     */
+    static long fingerprint(final byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Linear probing over two parallel arrays, kept at most half full. Only the creating thread writes to it.
+     */
+    static class FingerprintTable {
+        final AtomicLongArray fingerprints;
+        final AtomicLongArray ids;
+        int size;
+
+        FingerprintTable(final int capacity) {
+            this.fingerprints = new AtomicLongArray(capacity);
+            this.ids = new AtomicLongArray(capacity);
+        }
+
+        int capacity() {
+            return fingerprints.length();
+        }
+
+        void put(final long fingerprint, final long id) {
+            final int mask = capacity() - 1;
+            int slot = (int) fingerprint & mask;
+            while (fingerprints.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            ids.set(slot, id);
+            fingerprints.set(slot, fingerprint);
+            size++;
+        }
+
+        FingerprintTable grow() {
+            final FingerprintTable grown = new FingerprintTable(capacity() * 2);
+            for (int i = 0; i < capacity(); i++) {
+                final long fingerprint = fingerprints.get(i);
+                if (fingerprint != 0) {
+                    grown.put(fingerprint, ids.get(i));
+                }
+            }
+            return grown;
+        }
+    }
+}
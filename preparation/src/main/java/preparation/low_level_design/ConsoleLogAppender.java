@@ -0,0 +1,29 @@
+package preparation.low_level_design;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+
+class ConsoleLogAppender extends ByteBufferAppender {
+    static final int BUFFER_SIZE = 64 * 1024;
+    private final PrintStream out;
+
+    ConsoleLogAppender() {
+        this(System.out);
+    }
+
+    ConsoleLogAppender(final PrintStream out) {
+        super(new TextLogEncoder(), ByteBuffer.allocate(BUFFER_SIZE));
+        this.out = out;
+    }
+
+    @Override
+    protected void write(final ByteBuffer bytes) {
+        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        endOfBatch();
+    }
+}
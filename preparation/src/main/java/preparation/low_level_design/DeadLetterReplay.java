@@ -0,0 +1,147 @@
+package preparation.low_level_design;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import preparation.low_level_design.DeadLetterStore.DeadLetter;
+import preparation.low_level_design.NotificationService.NotificationJob;
+
+/**
+ * Puts matching dead letters back into the dispatcher at a fixed rate, paced by a token bucket so live traffic keeps
+ * the workers. Runs on its own daemon thread, oldest entry first.
+ *
+ * <p>Every entry is removed from the store before it is re-injected, so two replays never send the same job and an
+ * interrupted replay never sends one twice. {@link #stop()} leaves the rest in the store, and
+ * {@link #resume(Consumer)} picks up after the last replayed entry.
+ */
+class DeadLetterReplay {
+    static final int PROGRESS_EVERY = 100;
+    private static final String PACER_KEY = "dead-letter-replay";
+
+    private final DeadLetterStore store;
+    private final Predicate<DeadLetter> filter;
+    private final Consumer<NotificationJob> reinject;
+    private final int jobsPerSecond;
+    private final RateLimiter pacer;
+    private final AtomicLong replayed;
+    private final AtomicLong skipped;
+    private final CompletableFuture<Progress> completion;
+    private volatile long cursor;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    DeadLetterReplay(final DeadLetterStore store, final Predicate<DeadLetter> filter, final int jobsPerSecond,
+                     final Consumer<NotificationJob> reinject) {
+        this(store, filter, jobsPerSecond, reinject, 0);
+    }
+
+    private DeadLetterReplay(final DeadLetterStore store, final Predicate<DeadLetter> filter, final int jobsPerSecond,
+                             final Consumer<NotificationJob> reinject, final long cursor) {
+        if (jobsPerSecond < 1) {
+            throw new IllegalArgumentException("Invalid replay rate " + jobsPerSecond + " jobs per second");
+        }
+        this.store = store;
+        this.filter = filter;
+        this.reinject = reinject;
+        this.jobsPerSecond = jobsPerSecond;
+        // a burst of one second's worth at most
+        this.pacer = new BucketBasedRateLimiter(jobsPerSecond, jobsPerSecond);
+        this.replayed = new AtomicLong();
+        this.skipped = new AtomicLong();
+        this.completion = new CompletableFuture<>();
+        this.cursor = cursor;
+    }
+
+    /**
+     * Starts replaying; {@code progress} gets a snapshot every {@code PROGRESS_EVERY} jobs and a final one when the
+     * replay ends. The returned future completes with that final snapshot.
+     */
+    CompletableFuture<Progress> start(final Consumer<Progress> progress) {
+        thread = new Thread(() -> run(progress), "dead-letter-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return completion;
+    }
+
+    /**
+     * A new replay with the same filter and rate that continues after the last entry this one replayed.
+     */
+    DeadLetterReplay resume(final Consumer<Progress> progress) {
+        final DeadLetterReplay next = new DeadLetterReplay(store, filter, jobsPerSecond, reinject, cursor);
+        next.start(progress);
+        return next;
+    }
+
+    void stop() {
+        stopped = true;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    Progress getProgress() {
+        return progress(completion.isDone());
+    }
+
+    private Progress progress(final boolean finished) {
+        return new Progress(replayed.get(), skipped.get(), store.matching(filter).size(), cursor, finished);
+    }
+
+    private void run(final Consumer<Progress> progress) {
+        // jobs that fail again after being replayed land behind this point and are left for the next replay
+        final long end = store.lastSequence();
+        try {
+            for (DeadLetter deadLetter : store.after(cursor)) {
+                if (stopped || deadLetter.sequence > end) {
+                    break;
+                }
+                if (!filter.test(deadLetter)) {
+                    continue;
+                }
+                pacer.acquire(PACER_KEY).get();
+                if (store.remove(deadLetter)) {
+                    reinject.accept(deadLetter.job);
+                    replayed.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                }
+                cursor = deadLetter.sequence;
+                if ((replayed.get() + skipped.get()) % PROGRESS_EVERY == 0) {
+                    progress.accept(getProgress());
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() while waiting for a token, the entry was not taken yet
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        final Progress last = progress(true);
+        completion.complete(last);
+        progress.accept(last);
+    }
+
+    static class Progress {
+        final long replayed;
+        final long skipped;
+        final int remaining;
+        final long cursor;
+        final boolean finished;
+
+        Progress(final long replayed, final long skipped, final int remaining, final long cursor,
+                 final boolean finished) {
+            this.replayed = replayed;
+            this.skipped = skipped;
+            this.remaining = remaining;
+            this.cursor = cursor;
+            this.finished = finished;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("replayed=%d skipped=%d remaining=%d cursor=%d%s", replayed, skipped, remaining,
+                    cursor, finished ? " finished" : "");
+        }
+    }
+}
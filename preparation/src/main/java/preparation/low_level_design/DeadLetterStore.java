@@ -0,0 +1,130 @@
+package preparation.low_level_design;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import preparation.low_level_design.NotificationService.FailureReason;
+import preparation.low_level_design.NotificationService.NotificationJob;
+
+/**
+ * Bounded, thread-safe dead letter queue. Entries are kept in arrival order under a sequence number, which is also
+ * what a {@link DeadLetterReplay} uses as its resume point. Once {@code capacity} is reached the oldest entry is
+ * evicted, counted and handed to {@code onEvict}, which is where the owner lets go of it for good (the dispatcher
+ * acknowledges it in its journal).
+ */
+class DeadLetterStore {
+    static final int DEFAULT_CAPACITY = 100_000;
+
+    private final int capacity;
+    private final ConcurrentSkipListMap<Long, DeadLetter> entries;
+    private final AtomicLong sequence;
+    private final AtomicInteger size;
+    private final AtomicLong evicted;
+    private final Consumer<DeadLetter> onEvict;
+
+    DeadLetterStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    DeadLetterStore(final int capacity) {
+        this(capacity, deadLetter -> { });
+    }
+
+    DeadLetterStore(final int capacity, final Consumer<DeadLetter> onEvict) {
+        this.capacity = capacity;
+        this.entries = new ConcurrentSkipListMap<>();
+        this.sequence = new AtomicLong();
+        this.size = new AtomicInteger();
+        this.evicted = new AtomicLong();
+        this.onEvict = onEvict;
+    }
+
+    void add(final NotificationJob job, final FailureReason reason) {
+        final long id = sequence.incrementAndGet();
+        entries.put(id, new DeadLetter(id, job, reason, System.currentTimeMillis()));
+        if (size.incrementAndGet() > capacity) {
+            final Map.Entry<Long, DeadLetter> oldest = entries.pollFirstEntry();
+            if (oldest != null) {
+                size.decrementAndGet();
+                evicted.incrementAndGet();
+                System.out.println("Dead letter queue full, evicting job id: " + oldest.getValue().job.getId());
+                onEvict.accept(oldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes the entry, returning false if someone else (another replay, an eviction) got to it first.
+     */
+    boolean remove(final DeadLetter deadLetter) {
+        if (entries.remove(deadLetter.sequence, deadLetter)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Entries after {@code sequence}, oldest first. The view is live: entries added later show up, removed ones
+     * disappear.
+     */
+    Iterable<DeadLetter> after(final long sequence) {
+        final ConcurrentNavigableMap<Long, DeadLetter> tail = entries.tailMap(sequence, false);
+        return tail.values();
+    }
+
+    List<DeadLetter> matching(final Predicate<DeadLetter> filter) {
+        final List<DeadLetter> matches = new ArrayList<>();
+        for (DeadLetter deadLetter : entries.values()) {
+            if (filter.test(deadLetter)) {
+                matches.add(deadLetter);
+            }
+        }
+        return matches;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Sequence of the newest entry ever added.
+     */
+    long lastSequence() {
+        return sequence.get();
+    }
+
+    long getEvictedCount() {
+        return evicted.get();
+    }
+
+    static class DeadLetter {
+        final long sequence;
+        final NotificationJob job;
+        final FailureReason reason;
+        final long deadLetteredAtMillis;
+
+        DeadLetter(final long sequence, final NotificationJob job, final FailureReason reason,
+                   final long deadLetteredAtMillis) {
+            this.sequence = sequence;
+            this.job = job;
+            this.reason = reason;
+            this.deadLetteredAtMillis = deadLetteredAtMillis;
+        }
+
+        static Predicate<DeadLetter> forRecipient(final String recipient) {
+            return deadLetter -> deadLetter.job.getRecipient().equals(recipient);
+        }
+
+        static Predicate<DeadLetter> withReason(final FailureReason reason) {
+            return deadLetter -> deadLetter.reason == reason;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package preparation.low_level_design;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and per-stage latency histograms of a {@link NotificationService.NotificationDispatcherService}. Counters
+ * are per job except {@code failedAttempts} and {@code retries}, which count sends and rescheduled sends.
+ */
+class DispatcherMetrics {
+    final LongAdder submitted = new LongAdder();
+    final LongAdder succeeded = new LongAdder();
+    final LongAdder deadLettered = new LongAdder();
+    final LongAdder failedAttempts = new LongAdder();
+    final LongAdder retries = new LongAdder();
+
+    /** From entering the job queue to being taken by a worker. */
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    /** One call to the sender, single or batch. */
+    final LatencyHistogram send = new LatencyHistogram();
+    /** From a failed attempt to the job going back on the queue. */
+    final LatencyHistogram retryDelay = new LatencyHistogram();
+    /** From submission to success or the dead letter queue. */
+    final LatencyHistogram endToEnd = new LatencyHistogram();
+
+    Snapshot snapshot(final int queueDepth, final int inFlight, final int deadLetterQueueSize, final int parked,
+                      final int openCircuits, final List<FairJobQueue.LaneStats> lanes) {
+        return new Snapshot(submitted.sum(), succeeded.sum(), deadLettered.sum(), failedAttempts.sum(), retries.sum(),
+                queueWait.snapshot(), send.snapshot(), retryDelay.snapshot(), endToEnd.snapshot(),
+                queueDepth, inFlight, deadLetterQueueSize, parked, openCircuits, lanes);
+    }
+
+    static class Snapshot {
+        final long submitted;
+        final long succeeded;
+        final long deadLettered;
+        final long failedAttempts;
+        final long retries;
+        final LatencyHistogram.Snapshot queueWait;
+        final LatencyHistogram.Snapshot send;
+        final LatencyHistogram.Snapshot retryDelay;
+        final LatencyHistogram.Snapshot endToEnd;
+        final int queueDepth;
+        final int inFlight;
+        final int deadLetterQueueSize;
+        final int parked;
+        final int openCircuits;
+        final List<FairJobQueue.LaneStats> lanes;
+
+        Snapshot(final long submitted, final long succeeded, final long deadLettered, final long failedAttempts,
+                 final long retries, final LatencyHistogram.Snapshot queueWait, final LatencyHistogram.Snapshot send,
+                 final LatencyHistogram.Snapshot retryDelay, final LatencyHistogram.Snapshot endToEnd,
+                 final int queueDepth, final int inFlight, final int deadLetterQueueSize, final int parked,
+                 final int openCircuits, final List<FairJobQueue.LaneStats> lanes) {
+            this.submitted = submitted;
+            this.succeeded = succeeded;
+            this.deadLettered = deadLettered;
+            this.failedAttempts = failedAttempts;
+            this.retries = retries;
+            this.queueWait = queueWait;
+            this.send = send;
+            this.retryDelay = retryDelay;
+            this.endToEnd = endToEnd;
+            this.queueDepth = queueDepth;
+            this.inFlight = inFlight;
+            this.deadLetterQueueSize = deadLetterQueueSize;
+            this.parked = parked;
+            this.openCircuits = openCircuits;
+            this.lanes = lanes;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder()
+                    .append(":: Submitted ::: ").append(submitted).append('\n')
+                    .append(":: Success Counter ::: ").append(succeeded).append('\n')
+                    .append(":: Failed Counter ::: ").append(deadLettered).append('\n')
+                    .append(":: Failed Attempts ::: ").append(failedAttempts).append('\n')
+                    .append(":: Retry Counter ::: ").append(retries).append('\n')
+                    .append(":: Queue Depth ::: ").append(queueDepth).append('\n')
+                    .append(":: In Flight ::: ").append(inFlight).append('\n')
+                    .append(":: Dead Letter Queue ::: ").append(deadLetterQueueSize).append('\n')
+                    .append(":: Parked Jobs ::: ").append(parked).append('\n')
+                    .append(":: Open Circuits ::: ").append(openCircuits).append('\n')
+                    .append(":: Queue Wait ::: ").append(queueWait).append('\n')
+                    .append(":: Send ::: ").append(send).append('\n')
+                    .append(":: Retry Delay ::: ").append(retryDelay).append('\n')
+                    .append(":: End To End ::: ").append(endToEnd);
+            for (FairJobQueue.LaneStats lane : lanes) {
+                builder.append('\n').append(":: Lane ::: ").append(lane);
+            }
+            return builder.toString();
+        }
+    }
+}
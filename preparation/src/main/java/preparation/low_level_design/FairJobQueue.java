@@ -0,0 +1,220 @@
+package preparation.low_level_design;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import preparation.low_level_design.NotificationService.NotificationJob;
+import preparation.low_level_design.NotificationService.Priority;
+
+/**
+ * Job queue with one lane per {@link Priority}. Lanes are served in proportion to their weight, so bulk traffic
+ * still moves while password resets overtake it. Inside a lane every recipient has its own FIFO and recipients take
+ * turns (deficit round robin with a fixed quantum), so one noisy recipient cannot starve the others.
+ *
+ * <p>Everything is built from concurrent collections and atomics; the only blocking is the {@link Semaphore} that
+ * counts queued jobs for {@link #take()}.
+ */
+class FairJobQueue {
+    static final int DEFAULT_QUANTUM = 4;
+
+    private final Lane[] lanes;
+    private final Priority[] schedule;
+    private final AtomicLong ticket;
+    private final Semaphore available;
+
+    FairJobQueue() {
+        this(DEFAULT_QUANTUM);
+    }
+
+    FairJobQueue(final int quantum) {
+        final Priority[] priorities = Priority.values();
+        this.lanes = new Lane[priorities.length];
+        final List<Priority> slots = new ArrayList<>();
+        for (Priority priority : priorities) {
+            lanes[priority.ordinal()] = new Lane(priority, quantum);
+            for (int i = 0; i < priority.getWeight(); i++) {
+                slots.add(priority);
+            }
+        }
+        this.schedule = slots.toArray(new Priority[0]);
+        this.ticket = new AtomicLong();
+        this.available = new Semaphore(0);
+    }
+
+    void offer(final NotificationJob job) {
+        job.setEnqueuedAt(System.nanoTime());
+        lanes[job.getPriority().ordinal()].offer(job);
+        available.release();
+    }
+
+    NotificationJob take() throws InterruptedException {
+        available.acquire();
+        return next();
+    }
+
+    NotificationJob poll() {
+        return available.tryAcquire() ? next() : null;
+    }
+
+    NotificationJob poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return available.tryAcquire(timeout, unit) ? next() : null;
+    }
+
+    int size() {
+        return available.availablePermits();
+    }
+
+    /**
+     * Only called after a permit was taken, so a job is queued somewhere. A producer may still be between adding the
+     * job and making its recipient visible, which is why this can take another round.
+     */
+    private NotificationJob next() {
+        final int preferred = schedule[(int) (ticket.getAndIncrement() % schedule.length)].ordinal();
+        while (true) {
+            NotificationJob job = lanes[preferred].poll();
+            for (int i = 0; job == null && i < lanes.length; i++) {
+                job = lanes[i].poll();
+            }
+            if (job != null) {
+                return job;
+            }
+            Thread.yield();
+        }
+    }
+
+    List<LaneStats> laneStats() {
+        final List<LaneStats> stats = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            stats.add(lane.stats());
+        }
+        return stats;
+    }
+
+    static class Lane {
+        private final Priority priority;
+        private final int quantum;
+        private final Map<String, RecipientQueue> recipients;
+        private final ConcurrentLinkedDeque<RecipientQueue> active;
+        private final AtomicInteger depth;
+        private final LongAdder dequeued;
+        private final LongAdder totalWaitNanos;
+        private final AtomicLong maxWaitNanos;
+
+        Lane(final Priority priority, final int quantum) {
+            this.priority = priority;
+            this.quantum = quantum;
+            this.recipients = new ConcurrentHashMap<>();
+            this.active = new ConcurrentLinkedDeque<>();
+            this.depth = new AtomicInteger();
+            this.dequeued = new LongAdder();
+            this.totalWaitNanos = new LongAdder();
+            this.maxWaitNanos = new AtomicLong();
+        }
+
+        void offer(final NotificationJob job) {
+            final RecipientQueue queue = recipients.computeIfAbsent(job.getRecipient(),
+                    recipient -> new RecipientQueue(recipient, quantum));
+            queue.jobs.offer(job);
+            depth.incrementAndGet();
+            if (queue.scheduled.compareAndSet(false, true)) {
+                active.addLast(queue);
+            }
+        }
+
+        /**
+         * Takes the recipient at the front of the round. While it still has deficit it goes back to the front for the
+         * next caller, otherwise its deficit is topped up and it moves to the back.
+         */
+        NotificationJob poll() {
+            final RecipientQueue queue = active.pollFirst();
+            if (queue == null) {
+                return null;
+            }
+            final NotificationJob job = queue.jobs.poll();
+            if (job != null) {
+                depth.decrementAndGet();
+                recordWait(System.nanoTime() - job.getEnqueuedAt());
+                queue.deficit--;
+            }
+            if (queue.jobs.isEmpty()) {
+                queue.deficit = quantum;
+                queue.scheduled.set(false);
+                if (queue.jobs.isEmpty()) {
+                    recipients.remove(queue.recipient, queue);
+                } else if (queue.scheduled.compareAndSet(false, true)) {
+                    active.addLast(queue);
+                }
+            } else if (queue.deficit > 0) {
+                active.addFirst(queue);
+            } else {
+                queue.deficit = quantum;
+                active.addLast(queue);
+            }
+            return job != null ? job : poll();
+        }
+
+        private void recordWait(final long waitNanos) {
+            dequeued.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+
+        LaneStats stats() {
+            final long count = dequeued.sum();
+            return new LaneStats(priority, depth.get(), count,
+                    count == 0 ? 0 : totalWaitNanos.sum() / count, maxWaitNanos.get());
+        }
+    }
+
+    /**
+     * {@code scheduled} is true while the queue sits in its lane's round, so it is never in there twice. The deficit
+     * is only touched by whoever has just removed the queue from the round.
+     */
+    static class RecipientQueue {
+        final String recipient;
+        final Queue<NotificationJob> jobs;
+        final AtomicBoolean scheduled;
+        int deficit;
+
+        RecipientQueue(final String recipient, final int quantum) {
+            this.recipient = recipient;
+            this.jobs = new ConcurrentLinkedQueue<>();
+            this.scheduled = new AtomicBoolean();
+            this.deficit = quantum;
+        }
+    }
+
+    static class LaneStats {
+        final Priority priority;
+        final int depth;
+        final long dequeued;
+        final long averageWaitNanos;
+        final long maxWaitNanos;
+
+        LaneStats(final Priority priority, final int depth, final long dequeued, final long averageWaitNanos,
+                  final long maxWaitNanos) {
+            this.priority = priority;
+            this.depth = depth;
+            this.dequeued = dequeued;
+            this.averageWaitNanos = averageWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s depth=%d dequeued=%d avgWait=%.2fms maxWait=%.2fms", priority, depth, dequeued,
+                    averageWaitNanos / 1e6, maxWaitNanos / 1e6);
+        }
+    }
+}
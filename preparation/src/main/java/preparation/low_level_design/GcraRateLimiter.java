@@ -0,0 +1,295 @@
+package preparation.low_level_design;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Generic Cell Rate Algorithm: the whole per-client state is one {@code long}, the theoretical arrival time (TAT)
+ * of the next request, so a decision is one CAS and nothing is allocated per request.
+ *
+ * <p>Clients are identified by a 64-bit hash of their id. Two ids with the same hash share one TAT, and so one limit;
+ * at 64 bits that is not a practical concern. The table doubles whenever more clients are active around one slot
+ * than it can hold, so a burst of new ids costs a resize, never a failed decision.
+ */
+class GcraRateLimiter implements RateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final int maxTokens;
+    private final long origin;
+    private volatile LongHashTable tats;
+    private final RateLimiterMetrics metrics;
+
+    public GcraRateLimiter(final int refillRatePerSec, final int maxTokens, final int expectedClients) {
+        this(refillRatePerSec, maxTokens, expectedClients, new RateLimiterMetrics());
+    }
+
+    public GcraRateLimiter(final int refillRatePerSec, final int maxTokens, final int expectedClients,
+                           final RateLimiterMetrics metrics) {
+        this.emissionIntervalNanos = TimeUnit.SECONDS.toNanos(1) / refillRatePerSec;
+        this.burstToleranceNanos = emissionIntervalNanos * maxTokens;
+        this.maxTokens = maxTokens;
+        this.origin = System.nanoTime();
+        this.tats = new LongHashTable(expectedClients);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean tryAcquire(String clientId, int permits) {
+        checkPermits(permits);
+        final long key = hash(clientId);
+        final long cost = permits * emissionIntervalNanos;
+        LongHashTable table = tats;
+        int slot = -1;
+        boolean allowed;
+        while (true) {
+            final long now = now();
+            if (slot < 0) {
+                slot = table.slotFor(key, now);
+                if (slot < 0) {
+                    table = grow(table);
+                    continue;
+                }
+            }
+            final long tat = table.get(slot);
+            if (!table.holds(slot, key, tat)) {
+                table = relocate(table, tat);
+                slot = -1;
+                continue;
+            }
+            final long newTat = Math.max(tat, now) + cost;
+            if (newTat - now > burstToleranceNanos) {
+                allowed = false;
+                break;
+            }
+            if (table.compareAndSet(slot, tat, newTat)) {
+                allowed = true;
+                break;
+            }
+        }
+        metrics.record(clientId, allowed);
+        return allowed;
+    }
+
+    @Override
+    public CompletableFuture<Void> acquire(String clientId, int permits) {
+        checkPermits(permits);
+        final long key = hash(clientId);
+        final long cost = permits * emissionIntervalNanos;
+        LongHashTable table = tats;
+        int slot = -1;
+        while (true) {
+            final long now = now();
+            if (slot < 0) {
+                slot = table.slotFor(key, now);
+                if (slot < 0) {
+                    table = grow(table);
+                    continue;
+                }
+            }
+            final long tat = table.get(slot);
+            if (!table.holds(slot, key, tat)) {
+                table = relocate(table, tat);
+                slot = -1;
+                continue;
+            }
+            final long newTat = Math.max(tat, now) + cost;
+            if (table.compareAndSet(slot, tat, newTat)) {
+                final long waitNanos = newTat - burstToleranceNanos - now;
+                metrics.recordReservation(clientId, waitNanos);
+                return AcquireScheduler.completeAfter(waitNanos);
+            }
+        }
+    }
+
+    public RateLimiterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Called after losing a slot: a moved slot means the table is being replaced, so wait for the new one.
+     */
+    private LongHashTable relocate(final LongHashTable table, final long value) {
+        if (value != LongHashTable.MOVED) {
+            return table;
+        }
+        LongHashTable current;
+        while ((current = tats) == table) {
+            Thread.yield();
+        }
+        return current;
+    }
+
+    /**
+     * Replaces {@code full} with a table twice its size, unless another thread already did. Idle clients are left
+     * behind, since an idle client and a new one look the same.
+     */
+    private synchronized LongHashTable grow(final LongHashTable full) {
+        if (tats != full) {
+            return tats;
+        }
+        final LongHashTable grown = full.transfer(now());
+        tats = grown;
+        return grown;
+    }
+
+    private long now() {
+        return System.nanoTime() - origin;
+    }
+
+    private void checkPermits(final int permits) {
+        if (permits <= 0 || permits > maxTokens) {
+            throw new IllegalArgumentException("permits must be between 1 and " + maxTokens + " but was " + permits);
+        }
+    }
+
+    /**
+     * FNV-1a over the chars followed by a murmur3 finalizer; never returns the empty-slot marker 0.
+     */
+    static long hash(final String clientId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < clientId.length(); i++) {
+            h ^= clientId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe1a85ec3L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Open-addressing, linear-probing table of {@code long -> long} over two flat arrays. A key lives within
+     * {@code MAX_PROBE} slots of its home slot, so a lookup never scans more than that.
+     *
+     * <p>Keys are claimed with a CAS on an empty slot. An idle slot is taken over in three steps: its value is CASed
+     * to {@code RECLAIMING}, which makes every decision on it fail, then the key is replaced, then the value is reset
+     * to the current time. A caller holding a cached slot index checks {@link #holds} before each decision and looks
+     * the slot up again if it lost it.
+     *
+     * <p>A table is never resized in place. {@link #transfer} CASes every value to {@code MOVED}, which fails
+     * decisions the same way, and copies the live entries into a new table.
+     */
+    static class LongHashTable {
+        static final int MAX_PROBE = 64;
+        private static final long EMPTY = 0;
+        private static final long RECLAIMING = Long.MIN_VALUE;
+        static final long MOVED = Long.MIN_VALUE + 1;
+
+        private final AtomicLongArray keys;
+        private final AtomicLongArray values;
+        private final int mask;
+
+        LongHashTable(final int expectedEntries) {
+            final int capacity = Integer.highestOneBit(Math.max(2, expectedEntries) * 2 - 1) << 1;
+            this.keys = new AtomicLongArray(capacity);
+            this.values = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Finds or claims the slot for {@code key}. When its probe window is full, a slot whose value is already in
+         * the past (an idle client, indistinguishable from a new one) is taken over instead. Returns -1 if every
+         * client in the window is active.
+         */
+        int slotFor(final long key, final long now) {
+            final int start = (int) key & mask;
+            final int probe = Math.min(MAX_PROBE, mask + 1);
+            for (int i = 0; i < probe; ) {
+                final int index = (start + i) & mask;
+                final long current = keys.get(index);
+                if (current == key) {
+                    return index;
+                }
+                if (current == EMPTY) {
+                    if (keys.compareAndSet(index, EMPTY, key)) {
+                        return index;
+                    }
+                    // lost the race for this slot: look at it again, it may have been claimed for the same key
+                    continue;
+                }
+                i++;
+            }
+
+            for (int i = 0; i < probe; i++) {
+                final int index = (start + i) & mask;
+                final long value = values.get(index);
+                if (value != EMPTY && value != RECLAIMING && value != MOVED && value <= now
+                        && values.compareAndSet(index, value, RECLAIMING)) {
+                    // the slot is ours until the value is reset, nobody else writes its key meanwhile
+                    keys.set(index, key);
+                    values.set(index, now);
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Whether {@code slot} still belongs to {@code key}, given the value just read from it.
+         */
+        boolean holds(final int slot, final long key, final long value) {
+            return value != RECLAIMING && value != MOVED && keys.get(slot) == key;
+        }
+
+        /**
+         * Retires every slot and returns a table twice the size holding the clients still active at {@code now}.
+         * Only one thread may transfer a table.
+         */
+        LongHashTable transfer(final long now) {
+            final int capacity = mask + 1;
+            final long[] liveKeys = new long[capacity];
+            final long[] liveValues = new long[capacity];
+            int live = 0;
+            for (int i = 0; i < capacity; i++) {
+                long value;
+                // a takeover in progress ends with a plain write, wait for it
+                while ((value = values.get(i)) == RECLAIMING || !values.compareAndSet(i, value, MOVED)) {
+                    Thread.yield();
+                }
+                final long key = keys.get(i);
+                if (key != EMPTY && value > now) {
+                    liveKeys[live] = key;
+                    liveValues[live++] = value;
+                }
+            }
+            for (int size = capacity; ; size <<= 1) {
+                final LongHashTable grown = new LongHashTable(size);
+                if (grown.putAll(liveKeys, liveValues, live)) {
+                    return grown;
+                }
+            }
+        }
+
+        /**
+         * Fills a table nobody else can see yet; false if a key would land outside its probe window.
+         */
+        private boolean putAll(final long[] newKeys, final long[] newValues, final int count) {
+            final int probe = Math.min(MAX_PROBE, mask + 1);
+            for (int n = 0; n < count; n++) {
+                final int start = (int) newKeys[n] & mask;
+                int i = 0;
+                while (i < probe && keys.get((start + i) & mask) != EMPTY) {
+                    i++;
+                }
+                if (i == probe) {
+                    return false;
+                }
+                keys.set((start + i) & mask, newKeys[n]);
+                values.set((start + i) & mask, newValues[n]);
+            }
+            return true;
+        }
+
+        long get(final int slot) {
+            return values.get(slot);
+        }
+
+        boolean compareAndSet(final int slot, final long expected, final long update) {
+            return values.compareAndSet(slot, expected, update);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package preparation.low_level_design;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Timer for large numbers of short, imprecise delays such as retries. Scheduling is a lock-free queue append and
+ * firing walks one bucket per tick, so each timeout costs O(1) no matter how many are pending, unlike the heap
+ * behind a {@link java.util.concurrent.ScheduledExecutorService}.
+ *
+ * <p>Timeouts fire on the timer thread up to one tick late, so tasks must be quick; handing a job back to a queue is
+ * the intended use.
+ */
+class HashedWheelTimer {
+    static final long DEFAULT_TICK_MILLIS = 10;
+    static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private final long tickNanos;
+    private final Timeout[] wheel;
+    private final int mask;
+    private final Queue<Timeout> scheduled;
+    private final long startedAt;
+    private final Thread worker;
+    private volatile boolean running;
+
+    // timer thread only
+    private long tick;
+
+    HashedWheelTimer(final String name) {
+        this(name, DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+    }
+
+    HashedWheelTimer(final String name, final long tickDuration, final TimeUnit unit, final int wheelSize) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.wheel = new Timeout[Integer.highestOneBit(Math.max(2, wheelSize) * 2 - 1)];
+        this.mask = wheel.length - 1;
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.startedAt = System.nanoTime();
+        this.running = true;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    void schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        scheduled.offer(new Timeout(task, System.nanoTime() - startedAt + unit.toNanos(delay)));
+    }
+
+    /**
+     * Stops the timer; timeouts that have not fired yet are dropped.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            final long tickEndsAt = (tick + 1) * tickNanos;
+            long sleep;
+            while (running && (sleep = tickEndsAt - (System.nanoTime() - startedAt)) > 0) {
+                LockSupport.parkNanos(this, sleep);
+            }
+            transferScheduled();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    private void transferScheduled() {
+        for (Timeout timeout; (timeout = scheduled.poll()) != null; ) {
+            // anything already due goes into the current bucket
+            final long dueTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.rounds = (dueTick - tick) / wheel.length;
+            final int bucket = (int) (dueTick & mask);
+            timeout.next = wheel[bucket];
+            wheel[bucket] = timeout;
+        }
+    }
+
+    private void expire(final int index) {
+        Timeout previous = null;
+        for (Timeout timeout = wheel[index]; timeout != null; timeout = timeout.next) {
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                previous = timeout;
+                continue;
+            }
+            if (previous == null) {
+                wheel[index] = timeout.next;
+            } else {
+                previous.next = timeout.next;
+            }
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    static class Timeout {
+        final Runnable task;
+        final long deadline;
+        long rounds;
+        Timeout next;
+
+        Timeout(final Runnable task, final long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+    }
+}
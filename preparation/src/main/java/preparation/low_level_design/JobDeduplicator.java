@@ -0,0 +1,250 @@
+package preparation.low_level_design;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Remembers job ids for a time window so resubmissions can be dropped, with memory proportional to the submission
+ * rate times the window rather than to the whole history.
+ *
+ * <p>The window is split into {@code generations} slices. Ids go into the current slice; when its time is up the
+ * oldest slice is dropped whole and a new one starts, sized after the last full one. An id is therefore remembered
+ * for at least {@code (generations - 1) / generations} of the window and at most the full window.
+ *
+ * <p>Each slice is a set of open-addressing tables probed by a 64-bit fingerprint of the id, so a probe walks a dense
+ * {@code long[]}; the id stored next to a matching fingerprint is only compared to rule out a collision. Checking and
+ * recording an id is one atomic step: lookups and inserts share the read lock and claim slots with CAS, the write
+ * lock is only taken to rotate or to add a table to a full slice.
+ */
+class JobDeduplicator {
+    static final int DEFAULT_GENERATIONS = 4;
+    private static final int MIN_TABLE_CAPACITY = 1 << 10;
+
+    private final long sliceNanos;
+    private final Generation[] generations;
+    private final ReadWriteLock lock;
+    private int current;
+    private volatile long currentEndsAt;
+
+    JobDeduplicator(final long window, final TimeUnit unit) {
+        this(window, unit, DEFAULT_GENERATIONS);
+    }
+
+    JobDeduplicator(final long window, final TimeUnit unit, final int generations) {
+        if (window <= 0 || generations < 2) {
+            throw new IllegalArgumentException("Window must be positive and split into at least 2 generations");
+        }
+        this.sliceNanos = Math.max(1, unit.toNanos(window) / generations);
+        this.generations = new Generation[generations];
+        for (int i = 0; i < generations; i++) {
+            this.generations[i] = new Generation(MIN_TABLE_CAPACITY);
+        }
+        this.lock = new ReentrantReadWriteLock();
+        this.currentEndsAt = System.nanoTime() + sliceNanos;
+    }
+
+    /**
+     * Records the id and returns true, or returns false if it was already seen within the window. Concurrent calls
+     * with the same id see exactly one true.
+     */
+    boolean firstSeen(final UUID id) {
+        final long fingerprint = fingerprint(id);
+        while (true) {
+            if (System.nanoTime() - currentEndsAt >= 0) {
+                rotate();
+            }
+            final Table full;
+            lock.readLock().lock();
+            try {
+                final Generation generation = generations[current];
+                for (Generation other : generations) {
+                    if (other != generation && other.contains(fingerprint, id)) {
+                        return false;
+                    }
+                }
+                final Table table = generation.tables[generation.tables.length - 1];
+                for (int i = 0; i < generation.tables.length - 1; i++) {
+                    if (generation.tables[i].contains(fingerprint, id)) {
+                        return false;
+                    }
+                }
+                switch (table.insert(fingerprint, id)) {
+                    case Table.INSERTED:
+                        return true;
+                    case Table.PRESENT:
+                        return false;
+                    default:
+                        full = table;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            grow(full);
+        }
+    }
+
+    /**
+     * Ids remembered right now, across all generations.
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            int size = 0;
+            for (Generation generation : generations) {
+                size += generation.size();
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void rotate() {
+        lock.writeLock().lock();
+        try {
+            final long now = System.nanoTime();
+            if (now - currentEndsAt < 0) {
+                return;
+            }
+            final int expected = generations[current].size();
+            // skip as many slices as went by without any submissions
+            final long elapsed = Math.min((now - currentEndsAt) / sliceNanos + 1, generations.length);
+            for (long i = 0; i < elapsed; i++) {
+                current = (current + 1) % generations.length;
+                generations[current] = new Generation(i == 0 ? expected : 0);
+            }
+            currentEndsAt = now + sliceNanos;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void grow(final Table full) {
+        lock.writeLock().lock();
+        try {
+            final Generation generation = generations[current];
+            final Table last = generation.tables[generation.tables.length - 1];
+            if (last == full) {
+                generation.add(new Table(last.capacity() * 2));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static long fingerprint(final UUID id) {
+        long h = id.getMostSignificantBits() * 0x9E3779B97F4A7C15L ^ id.getLeastSignificantBits();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        // 0 marks a free slot
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * The ids seen during one slice of the window. Tables are only added under the write lock.
+     */
+    static class Generation {
+        volatile Table[] tables;
+
+        Generation(final int expectedIds) {
+            this.tables = new Table[] {new Table(Math.max(MIN_TABLE_CAPACITY, expectedIds * 2))};
+        }
+
+        boolean contains(final long fingerprint, final UUID id) {
+            for (Table table : tables) {
+                if (table.contains(fingerprint, id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void add(final Table table) {
+            final Table[] updated = Arrays.copyOf(tables, tables.length + 1);
+            updated[tables.length] = table;
+            tables = updated;
+        }
+
+        int size() {
+            int size = 0;
+            for (Table table : tables) {
+                size += table.size.get();
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Insert-only linear probing table kept at most half full. A slot's fingerprint is claimed with CAS before its id
+     * is written, so a reader that matches a fingerprint waits for the id to appear.
+     */
+    static class Table {
+        static final int INSERTED = 0;
+        static final int PRESENT = 1;
+        static final int FULL = 2;
+
+        private final AtomicLongArray fingerprints;
+        private final AtomicReferenceArray<UUID> ids;
+        private final int mask;
+        final AtomicInteger size;
+
+        Table(final int expectedCapacity) {
+            final int capacity = Integer.highestOneBit(Math.max(2, expectedCapacity) * 2 - 1);
+            this.fingerprints = new AtomicLongArray(capacity);
+            this.ids = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.size = new AtomicInteger();
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        boolean contains(final long fingerprint, final UUID id) {
+            for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+                final long stored = fingerprints.get(i);
+                if (stored == 0) {
+                    return false;
+                }
+                if (stored == fingerprint && id.equals(awaitId(i))) {
+                    return true;
+                }
+            }
+        }
+
+        int insert(final long fingerprint, final UUID id) {
+            for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+                final long stored = fingerprints.get(i);
+                if (stored == 0) {
+                    if (size.get() >= capacity() / 2) {
+                        return FULL;
+                    }
+                    if (fingerprints.compareAndSet(i, 0, fingerprint)) {
+                        ids.set(i, id);
+                        size.incrementAndGet();
+                        return INSERTED;
+                    }
+                    // lost the slot, look at what was put there
+                    i = (i - 1) & mask;
+                } else if (stored == fingerprint && id.equals(awaitId(i))) {
+                    return PRESENT;
+                }
+            }
+        }
+
+        private UUID awaitId(final int slot) {
+            UUID id;
+            while ((id = ids.get(slot)) == null) {
+                Thread.yield();
+            }
+            return id;
+        }
+    }
+}
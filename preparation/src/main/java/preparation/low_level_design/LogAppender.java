@@ -0,0 +1,15 @@
+package preparation.low_level_design;
+
+/**
+ * Destination of the {@link AsyncLogger} flusher. Only ever called from the single flusher thread.
+ */
+interface LogAppender {
+    void append(LogMessage message);
+
+    /**
+     * Called once after every drained batch; this is where buffered bytes reach the destination.
+     */
+    void endOfBatch();
+
+    void close();
+}
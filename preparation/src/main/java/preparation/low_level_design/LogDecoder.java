@@ -0,0 +1,118 @@
+package preparation.low_level_design;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns segments written with {@link BinaryLogEncoder} back into the text format of {@link TextLogEncoder}.
+ *
+ * <pre>java preparation.low_level_design.LogDecoder app-*.bin &gt; app.log</pre>
+ */
+public class LogDecoder {
+    private final LogAppender out;
+
+    public LogDecoder(final PrintStream out) {
+        this.out = new ConsoleLogAppender(out);
+    }
+
+    public void decode(final Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        out.endOfBatch();
+    }
+
+    void decode(final ByteBuffer in) {
+        final byte[] magic = new byte[BinaryLogEncoder.MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, BinaryLogEncoder.MAGIC)) {
+            throw new IllegalArgumentException("Not a binary log segment");
+        }
+        long timestamp = in.getLong();
+        final List<String> threads = new ArrayList<>();
+        final List<String> templates = new ArrayList<>();
+        final LogMessage message = new LogMessage();
+
+        while (in.hasRemaining()) {
+            final byte type = in.get();
+            switch (type) {
+                case BinaryLogEncoder.THREAD:
+                    define(threads, in.getInt(), getString(in));
+                    break;
+                case BinaryLogEncoder.TEMPLATE:
+                    define(templates, in.getInt(), getString(in));
+                    break;
+                case BinaryLogEncoder.MESSAGE:
+                case BinaryLogEncoder.LITERAL:
+                    timestamp += in.getInt();
+                    final LogLevel level = LogLevel.values()[in.get()];
+                    final String threadName = threads.get(in.getInt());
+                    if (type == BinaryLogEncoder.LITERAL) {
+                        message.set(level, getString(in), null, timestamp, threadName);
+                    } else {
+                        final String template = templates.get(in.getInt());
+                        final Object[] args = new Object[in.get() & 0xFF];
+                        for (int i = 0; i < args.length; i++) {
+                            args[i] = getArg(in);
+                        }
+                        message.set(level, template, args, timestamp, threadName);
+                    }
+                    out.append(message);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown record type " + type + " at " + (in.position() - 1));
+            }
+        }
+    }
+
+    private static void define(final List<String> dictionary, final int id, final String value) {
+        while (dictionary.size() <= id) {
+            dictionary.add(null);
+        }
+        dictionary.set(id, value);
+    }
+
+    private static Object getArg(final ByteBuffer in) {
+        final byte tag = in.get();
+        switch (tag) {
+            case BinaryLogEncoder.ARG_NULL:
+                return null;
+            case BinaryLogEncoder.ARG_BOOLEAN:
+                return in.get() != 0;
+            case BinaryLogEncoder.ARG_INT:
+                return in.getInt();
+            case BinaryLogEncoder.ARG_LONG:
+                return in.getLong();
+            case BinaryLogEncoder.ARG_FLOAT:
+                return in.getFloat();
+            case BinaryLogEncoder.ARG_DOUBLE:
+                return in.getDouble();
+            case BinaryLogEncoder.ARG_STRING:
+                return getString(in);
+            default:
+                throw new IllegalArgumentException("Unknown argument tag " + tag + " at " + (in.position() - 1));
+        }
+    }
+
+    private static String getString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws IOException {
+        final LogDecoder decoder = new LogDecoder(System.out);
+        for (String file : args) {
+            decoder.decode(Paths.get(file));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package preparation.low_level_design;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+interface LogEncoder {
+    int MAX_SEGMENT_HEADER_BYTES = 64;
+
+    /**
+     * Called whenever a new file segment is opened, before any message is encoded into it. Encoders that keep state
+     * across messages reset it here so every segment can be read on its own.
+     */
+    default void startSegment(ByteBuffer header, long openedAt) {
+    }
+
+    default String fileExtension() {
+        return "log";
+    }
+
+    /**
+     * Writes one message into {@code buffer}. May throw {@link BufferOverflowException}; the caller then rewinds the
+     * partial write, empties the buffer and tries again.
+     */
+    void encode(LogMessage message, ByteBuffer buffer);
+
+    /**
+     * {@code String.valueOf(arg)} for a log argument. A {@code toString()} that throws yields a placeholder instead,
+     * since it runs on the flusher thread and must not fail the whole batch.
+     */
+    static String render(final Object arg) {
+        try {
+            return String.valueOf(arg);
+        } catch (RuntimeException e) {
+            return "[" + arg.getClass().getName() + ".toString() threw " + e.getClass().getName() + "]";
+        }
+    }
+}
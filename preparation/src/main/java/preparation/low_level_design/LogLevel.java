@@ -0,0 +1,16 @@
+package preparation.low_level_design;
+
+enum LogLevel {
+    DEBUG(1),
+    INFO(2),
+    ERROR(3);
+
+    private final int priority;
+    LogLevel(int priority) {
+        this.priority = priority;
+    }
+
+    public int getPriority() {
+        return this.priority;
+    }
+}
@@ -0,0 +1,24 @@
+package preparation.low_level_design;
+
+class LogMessage {
+    LogLevel logLevel;
+    String message;
+    Object[] args;
+    long timestamp;
+    String threadName;
+
+    void set(final LogLevel logLevel, final String message, final Object[] args, final long timestamp,
+             final String threadName) {
+        this.logLevel = logLevel;
+        this.message = message;
+        this.args = args;
+        this.timestamp = timestamp;
+        this.threadName = threadName;
+    }
+
+    void clear() {
+        this.message = null;
+        this.args = null;
+        this.threadName = null;
+    }
+}
@@ -0,0 +1,454 @@
+package preparation.low_level_design;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+
+import preparation.low_level_design.NotificationService.Channel;
+import preparation.low_level_design.NotificationService.FailureReason;
+import preparation.low_level_design.NotificationService.NotificationJob;
+import preparation.low_level_design.NotificationService.Priority;
+import preparation.low_level_design.NotificationService.Status;
+
+/**
+ * Write-ahead journal that lets {@link NotificationService.NotificationDispatcherService} survive a restart.
+ *
+ * <p>Every state change of a job is appended to the active segment as a {@code [length][crc32][record]} frame. One
+ * writer thread drains whatever has queued up, writes it with a single {@link FileChannel#write} and, if any of it
+ * was a submission, a single {@code force} (group commit), so concurrent submitters share the fsync cost.
+ *
+ * <p>Segments are only ever deleted oldest first and only once none of the jobs they introduced is still pending,
+ * which keeps every acknowledgement on disk for as long as the submission it cancels. A few long-lived jobs
+ * (typically dead letters) are re-journaled into the active segment so they do not pin old segments forever.
+ */
+class NotificationJournal {
+    static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    static final int MAX_RETAINED_SEGMENTS = 4;
+    private static final int MAX_BATCH_BYTES = 1 << 20;
+
+    private static final byte SUBMITTED = 1;
+    private static final byte RETRIED = 2;
+    private static final byte DEAD_LETTERED = 3;
+    private static final byte COMPLETED = 4;
+    // poison entry: everything queued before it is written and forced, then the writer stops
+    private static final Entry STOP = new Entry((byte) 0, null);
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final BlockingQueue<Entry> pending;
+    private final Thread writer;
+    private final List<NotificationJob> recovered;
+    private volatile boolean closed;
+
+    // writer thread only
+    private final Deque<Segment> segments;
+    private final Map<UUID, LiveJob> liveJobs;
+    private final ByteBuffer batch;
+    private final CRC32 crc;
+    private Segment active;
+    private long nextSegmentId;
+
+    NotificationJournal(final Path directory) {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    NotificationJournal(final Path directory, final long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.pending = new LinkedBlockingQueue<>();
+        this.segments = new ArrayDeque<>();
+        this.liveJobs = new HashMap<>();
+        this.batch = ByteBuffer.allocateDirect(MAX_BATCH_BYTES);
+        this.crc = new CRC32();
+        try {
+            Files.createDirectories(directory);
+            this.recovered = recover();
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.writer = new Thread(this::runWriter, "notification-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Jobs that were pending when the previous process stopped, with their retry count. Dead-lettered jobs come back
+     * with status {@link Status#FAILED} and their failure reason.
+     */
+    List<NotificationJob> recoveredJobs() {
+        return recovered;
+    }
+
+    /**
+     * Completes once the submission is on disk.
+     */
+    CompletableFuture<Void> submitted(final NotificationJob job) {
+        return append(new Entry(SUBMITTED, job));
+    }
+
+    void retried(final NotificationJob job) {
+        append(new Entry(RETRIED, job));
+    }
+
+    void deadLettered(final NotificationJob job) {
+        append(new Entry(DEAD_LETTERED, job));
+    }
+
+    void completed(final NotificationJob job) {
+        append(new Entry(COMPLETED, job));
+    }
+
+    private CompletableFuture<Void> append(final Entry entry) {
+        if (closed) {
+            entry.future.completeExceptionally(new IllegalStateException("Journal is closed"));
+        } else {
+            pending.offer(entry);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Writes and forces everything appended so far, then closes the segments. The writer is stopped with a poison
+     * entry rather than an interrupt: an interrupt inside a channel operation closes the channel and loses the batch.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.offer(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        final List<Entry> drained = new ArrayList<>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                drained.add(pending.take());
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            pending.drainTo(drained);
+            stopping |= drained.remove(STOP);
+            if (!drained.isEmpty()) {
+                writeBatch(drained);
+                drained.clear();
+            }
+        }
+        closeSegments();
+        // appended while close() was flipping the flag
+        for (Entry entry; (entry = pending.poll()) != null; ) {
+            entry.future.completeExceptionally(new IllegalStateException("Journal is closed"));
+        }
+    }
+
+    private void closeSegments() {
+        try {
+            active.channel.force(false);
+            for (Segment segment : segments) {
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Could not close the journal in " + directory + ": " + e);
+        }
+    }
+
+    private void writeBatch(final List<Entry> entries) {
+        try {
+            boolean needsSync = false;
+            for (Entry entry : entries) {
+                stage(entry, needsSync);
+                needsSync |= entry.type == SUBMITTED;
+            }
+            flushBatch(needsSync);
+            // only records that reached the file count towards a segment's live jobs
+            for (Entry entry : entries) {
+                track(entry);
+            }
+            for (Entry entry : entries) {
+                entry.future.complete(null);
+            }
+            if (active.bytes >= maxSegmentBytes) {
+                roll();
+            }
+        } catch (IOException | RuntimeException e) {
+            batch.clear();
+            for (Entry entry : entries) {
+                entry.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Adds the record to the write batch, writing the batch out first if it is full. The caller tracks the entry once
+     * the batch has been written.
+     */
+    private void stage(final Entry entry, final boolean syncOnFlush) throws IOException {
+        final int start = batch.position();
+        try {
+            encode(entry.type, entry.job);
+        } catch (BufferOverflowException e) {
+            batch.position(start);
+            flushBatch(syncOnFlush);
+            encode(entry.type, entry.job);
+        }
+    }
+
+    private void flushBatch(final boolean sync) throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            active.bytes += active.channel.write(batch);
+        }
+        batch.clear();
+        if (sync) {
+            active.channel.force(false);
+        }
+    }
+
+    private void encode(final byte type, final NotificationJob job) {
+        final int frameStart = batch.position();
+        batch.position(frameStart + 8);
+        final int recordStart = batch.position();
+        batch.put(type)
+                .putLong(job.getId().getMostSignificantBits())
+                .putLong(job.getId().getLeastSignificantBits())
+                .putInt(job.getRetryCount());
+        if (type == DEAD_LETTERED) {
+            batch.put(deadLetterByte(job));
+        } else if (type == SUBMITTED) {
+            batch.put(deadLetterByte(job))
+                    .put((byte) job.getPriority().ordinal())
+                    .put((byte) job.getChannel().ordinal());
+            putString(job.getRecipient());
+            putString(job.getPayload());
+        }
+        final int recordEnd = batch.position();
+        crc.reset();
+        for (int i = recordStart; i < recordEnd; i++) {
+            crc.update(batch.get(i));
+        }
+        batch.putInt(frameStart, recordEnd - recordStart).putInt(frameStart + 4, (int) crc.getValue());
+    }
+
+    /**
+     * 0 for a live job, otherwise the failure reason's ordinal plus one.
+     */
+    private static byte deadLetterByte(final NotificationJob job) {
+        return (byte) (job.getStatus() == Status.FAILED ? job.getFailureReason().ordinal() + 1 : 0);
+    }
+
+    private void putString(final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        batch.putInt(bytes.length).put(bytes);
+    }
+
+    private void track(final Entry entry) {
+        final UUID id = entry.job.getId();
+        if (entry.type == SUBMITTED) {
+            final LiveJob previous = liveJobs.put(id, new LiveJob(entry.job, active));
+            if (previous != null) {
+                previous.segment.liveJobs--;
+            }
+            active.liveJobs++;
+        } else if (entry.type == COMPLETED) {
+            final LiveJob live = liveJobs.remove(id);
+            if (live != null) {
+                live.segment.liveJobs--;
+            }
+        }
+    }
+
+    private void roll() throws IOException {
+        active.channel.force(false);
+        openSegment();
+        truncate();
+        if (segments.size() > MAX_RETAINED_SEGMENTS) {
+            relocate(segments.peekFirst());
+            truncate();
+        }
+    }
+
+    private void truncate() throws IOException {
+        while (segments.size() > 1 && segments.peekFirst().liveJobs == 0) {
+            final Segment oldest = segments.pollFirst();
+            oldest.channel.close();
+            Files.deleteIfExists(oldest.path);
+        }
+    }
+
+    /**
+     * Re-journals the jobs still pending in {@code segment} into the active one, so it can be deleted.
+     */
+    private void relocate(final Segment segment) throws IOException {
+        final List<Entry> moved = new ArrayList<>();
+        for (LiveJob live : liveJobs.values()) {
+            if (live.segment == segment) {
+                moved.add(new Entry(SUBMITTED, live.job));
+            }
+        }
+        for (Entry entry : moved) {
+            stage(entry, false);
+        }
+        flushBatch(true);
+        for (Entry entry : moved) {
+            track(entry);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        final Path path = directory.resolve(String.format("jobs-%012d.journal", nextSegmentId++));
+        active = new Segment(path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND));
+        active.bytes = active.channel.size();
+        segments.addLast(active);
+    }
+
+    private List<NotificationJob> recover() throws IOException {
+        final List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "jobs-*.journal")) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        paths.sort(null);
+
+        final Map<UUID, LiveJob> replayed = new LinkedHashMap<>();
+        for (Path path : paths) {
+            final Segment segment = new Segment(path, FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE));
+            segments.addLast(segment);
+            replay(segment, replayed);
+            final String name = path.getFileName().toString();
+            nextSegmentId = Long.parseLong(name.substring("jobs-".length(), name.length() - ".journal".length())) + 1;
+        }
+
+        final List<NotificationJob> jobs = new ArrayList<>(replayed.size());
+        for (Map.Entry<UUID, LiveJob> entry : replayed.entrySet()) {
+            liveJobs.put(entry.getKey(), entry.getValue());
+            entry.getValue().segment.liveJobs++;
+            jobs.add(entry.getValue().job);
+        }
+        truncate();
+        return jobs;
+    }
+
+    private void replay(final Segment segment, final Map<UUID, LiveJob> replayed) throws IOException {
+        final ByteBuffer in = ByteBuffer.allocate((int) segment.channel.size());
+        while (in.hasRemaining() && segment.channel.read(in, in.position()) > 0) {
+            // read the whole segment
+        }
+        in.flip();
+        while (in.remaining() >= 8) {
+            final int length = in.getInt();
+            final int checksum = in.getInt();
+            if (length <= 0 || length > in.remaining()) {
+                break;
+            }
+            crc.reset();
+            for (int i = in.position(); i < in.position() + length; i++) {
+                crc.update(in.get(i));
+            }
+            if ((int) crc.getValue() != checksum) {
+                // torn write at the tail of the last segment
+                break;
+            }
+            final byte type = in.get();
+            final UUID id = new UUID(in.getLong(), in.getLong());
+            final int retryCount = in.getInt();
+            if (type == SUBMITTED) {
+                final byte dead = in.get();
+                final Priority priority = Priority.values()[in.get()];
+                final Channel channel = Channel.values()[in.get()];
+                final String recipient = getString(in);
+                final String payload = getString(in);
+                final NotificationJob job = new NotificationJob(id, recipient, payload, priority, channel);
+                job.setRetryCount(retryCount);
+                if (dead != 0) {
+                    job.setStatus(Status.FAILED);
+                    job.setFailureReason(FailureReason.values()[dead - 1]);
+                }
+                replayed.put(id, new LiveJob(job, segment));
+            } else {
+                final byte dead = type == DEAD_LETTERED ? in.get() : 0;
+                final LiveJob live = replayed.get(id);
+                if (live == null) {
+                    continue;
+                }
+                if (type == COMPLETED) {
+                    replayed.remove(id);
+                } else {
+                    live.job.setRetryCount(retryCount);
+                    if (type == DEAD_LETTERED) {
+                        live.job.setStatus(Status.FAILED);
+                        live.job.setFailureReason(FailureReason.values()[dead - 1]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String getString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static class Entry {
+        final byte type;
+        final NotificationJob job;
+        final CompletableFuture<Void> future;
+
+        Entry(final byte type, final NotificationJob job) {
+            this.type = type;
+            this.job = job;
+            this.future = new CompletableFuture<>();
+        }
+    }
+
+    static class Segment {
+        final Path path;
+        final FileChannel channel;
+        long bytes;
+        int liveJobs;
+
+        Segment(final Path path, final FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    static class LiveJob {
+        final NotificationJob job;
+        final Segment segment;
+
+        LiveJob(final NotificationJob job, final Segment segment) {
+            this.job = job;
+            this.segment = segment;
+        }
+    }
+}
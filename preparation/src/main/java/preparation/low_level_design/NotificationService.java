@@ -1,8 +1,11 @@
 package preparation.low_level_design;
 
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class NotificationService {
     static enum Status {
@@ -11,130 +14,658 @@ public class NotificationService {
         COMPLETED,
         FAILED;
     }
+
+    /**
+     * Why a job ended up in the dead letter queue, as of its last attempt.
+     */
+    static enum FailureReason {
+        /** The provider answered and refused the message. */
+        REJECTED,
+        /** The request itself failed: an exception, a timeout, no answer. */
+        SEND_ERROR;
+    }
+
+    /**
+     * Scheduling lanes; the weight is how many turns a lane gets per round relative to the others.
+     */
+    static enum Priority {
+        CRITICAL(8),
+        HIGH(4),
+        NORMAL(2),
+        BULK(1);
+
+        private final int weight;
+
+        Priority(final int weight) {
+            this.weight = weight;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+
+    static enum Channel {
+        EMAIL,
+        SMS,
+        PUSH;
+    }
+
+    /**
+     * Provider integration. Providers that accept several messages per request override {@link #sendBatch}; the
+     * default just sends one by one.
+     */
+    @FunctionalInterface
+    interface NotificationSender {
+        boolean send(NotificationJob job);
+
+        /**
+         * Sends jobs that all share {@code channel} and returns one result per job, in order.
+         */
+        default boolean[] sendBatch(final Channel channel, final List<NotificationJob> jobs) {
+            final boolean[] results = new boolean[jobs.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = send(jobs.get(i));
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Non-blocking provider integration: the dispatcher thread only starts the request, so the number of requests in
+     * flight is bounded by the per-channel limits rather than by the worker count. A future that completes
+     * exceptionally counts as a failed attempt for every job in the request.
+     */
+    @FunctionalInterface
+    interface AsyncNotificationSender {
+        CompletableFuture<Boolean> sendAsync(NotificationJob job);
+
+        /**
+         * Same contract as {@link NotificationSender#sendBatch}; the default sends the jobs concurrently.
+         */
+        default CompletableFuture<boolean[]> sendBatchAsync(final Channel channel, final List<NotificationJob> jobs) {
+            final List<CompletableFuture<Boolean>> futures = new ArrayList<>(jobs.size());
+            for (NotificationJob job : jobs) {
+                futures.add(sendAsync(job));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+                final boolean[] results = new boolean[futures.size()];
+                for (int i = 0; i < results.length; i++) {
+                    results[i] = futures.get(i).join();
+                }
+                return results;
+            });
+        }
+
+        /**
+         * Runs a blocking sender on the calling worker thread; the future is already complete when returned.
+         */
+        static AsyncNotificationSender of(final NotificationSender sender) {
+            return new AsyncNotificationSender() {
+                @Override
+                public CompletableFuture<Boolean> sendAsync(final NotificationJob job) {
+                    return CompletableFuture.completedFuture(sender.send(job));
+                }
+
+                @Override
+                public CompletableFuture<boolean[]> sendBatchAsync(final Channel channel,
+                                                                   final List<NotificationJob> jobs) {
+                    return CompletableFuture.completedFuture(sender.sendBatch(channel, jobs));
+                }
+            };
+        }
+    }
+
     static class NotificationJob {
         private final UUID id;
         private final String recipient;
         private final String payload;
+        private final Priority priority;
+        private final Channel channel;
         private int retryCount;
         private Status status;
+        private long enqueuedAt;
+        private long submittedAt;
+        private FailureReason failureReason;
 
         public NotificationJob(UUID id, String recipient, String payload) {
+            this(id, recipient, payload, Priority.NORMAL);
+        }
+
+        public NotificationJob(UUID id, String recipient, String payload, Priority priority) {
+            this(id, recipient, payload, priority, Channel.EMAIL);
+        }
+
+        public NotificationJob(UUID id, String recipient, String payload, Priority priority, Channel channel) {
             this.id = id;
             this.recipient = recipient;
             this.payload = payload;
+            this.priority = priority;
+            this.channel = channel;
             this.retryCount = 0;
             this.status = Status.SUBMITTED;
         }
+
+        public UUID getId() {
+            return id;
+        }
+
+        public String getRecipient() {
+            return recipient;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public Channel getChannel() {
+            return channel;
+        }
+
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        long getEnqueuedAt() {
+            return enqueuedAt;
+        }
+
+        void setEnqueuedAt(long enqueuedAt) {
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        void setSubmittedAt(long submittedAt) {
+            this.submittedAt = submittedAt;
+        }
+
+        FailureReason getFailureReason() {
+            return failureReason;
+        }
+
+        void setFailureReason(FailureReason failureReason) {
+            this.failureReason = failureReason;
+        }
+
+        void setRetryCount(int retryCount) {
+            this.retryCount = retryCount;
+        }
+
+        void setStatus(Status status) {
+            this.status = status;
+        }
+    }
+
+    static enum DispatchMode {
+        /** A fixed pool of workers blocked on the job queue. */
+        WORKER_POOL,
+        /** One short-lived task per submitted job, on virtual threads when the JVM has them. */
+        TASK_PER_JOB;
     }
 
     static class NotificationDispatcherService {
 
-        private final Queue<NotificationJob> jobQueue;
-        private final Set<UUID> jobSet;
-        private final List<NotificationJob> deadLetterQueue;
+        private final FairJobQueue jobQueue;
+        private final JobDeduplicator deduplicator;
+        private final DeadLetterStore deadLetters;
         private final ExecutorService workerPool;
-        private final ScheduledExecutorService retryScheduler;
-        private final AtomicInteger successCounter;
-        private final AtomicInteger retryCounter;
-        private final AtomicInteger failedCounter;
+        private final HashedWheelTimer retryTimer;
+        private final CircuitBreakers circuitBreakers;
+        private final DispatcherMetrics metrics;
+        private final AtomicInteger inFlight;
 
         static final int RETRY_COUNT = 3;
         static final int RETRY_DELAY = 500;
+        static final int MAX_RETRY_DELAY = 30_000;
+        static final long DEDUP_WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(10);
+        static final int MAX_IN_FLIGHT_PER_CHANNEL = 1024;
 
         private final int workerThreadCount;
-        private final int retryThreadCount;
+        private final DispatchMode dispatchMode;
+        private final AsyncNotificationSender sender;
+        private final Map<Channel, ChannelDispatch> channels;
+        private final int maxBatchSize;
+        private final long maxLingerNanos;
+        private final NotificationJournal journal;
+
+        public NotificationDispatcherService(final int workerThreadCount) {
+            this(workerThreadCount, DispatchMode.WORKER_POOL);
+        }
 
+        /**
+         * @deprecated retries run on one timer thread, so {@code retryThreadCount} is ignored; use
+         * {@link #NotificationDispatcherService(int)}.
+         */
+        @Deprecated
         public NotificationDispatcherService(final int workerThreadCount, final int retryThreadCount) {
-            this.jobQueue = new ConcurrentLinkedDeque<>();
-            this.workerPool = Executors.newFixedThreadPool(workerThreadCount);
-            this.retryScheduler = Executors.newScheduledThreadPool(retryThreadCount);
-            this.deadLetterQueue = new LinkedList<>();
-            this.jobSet = new HashSet<>();
-            this.successCounter = new AtomicInteger(0);
-            this.retryCounter = new AtomicInteger(0);
-            this.failedCounter = new AtomicInteger(0);
+            this(workerThreadCount);
+        }
+
+        public NotificationDispatcherService(final int workerThreadCount, final DispatchMode dispatchMode) {
+            this(workerThreadCount, dispatchMode, job -> new Random().nextBoolean(), 1, 0);
+        }
+
+        /**
+         * A worker that picks up a job keeps collecting more for up to {@code maxLingerMillis}, or until it holds
+         * {@code maxBatchSize}, then hands each channel's share to {@link NotificationSender#sendBatch} in one call.
+         * A batch size of 1 sends every job on its own as soon as it is taken.
+         */
+        public NotificationDispatcherService(final int workerThreadCount, final DispatchMode dispatchMode,
+                                             final NotificationSender sender, final int maxBatchSize,
+                                             final long maxLingerMillis) {
+            this(workerThreadCount, dispatchMode, sender, maxBatchSize, maxLingerMillis, null);
+        }
+
+        /**
+         * With a {@code journalDirectory} every submission, retry, dead letter and completion is journaled there
+         * first, and {@link #start()} picks up whatever the previous run left unfinished. {@code null} keeps
+         * everything in memory.
+         */
+        public NotificationDispatcherService(final int workerThreadCount, final DispatchMode dispatchMode,
+                                             final NotificationSender sender, final int maxBatchSize,
+                                             final long maxLingerMillis, final Path journalDirectory) {
+            this(workerThreadCount, dispatchMode, sender, maxBatchSize, maxLingerMillis, journalDirectory,
+                    DEDUP_WINDOW_MILLIS);
+        }
+
+        /**
+         * A job id seen again within {@code dedupWindowMillis} of its first submission is dropped as a duplicate.
+         */
+        public NotificationDispatcherService(final int workerThreadCount, final DispatchMode dispatchMode,
+                                             final NotificationSender sender, final int maxBatchSize,
+                                             final long maxLingerMillis, final Path journalDirectory,
+                                             final long dedupWindowMillis) {
+            this(workerThreadCount, dispatchMode, AsyncNotificationSender.of(sender), maxBatchSize,
+                    maxLingerMillis, journalDirectory, dedupWindowMillis, MAX_IN_FLIGHT_PER_CHANNEL);
+        }
+
+        /**
+         * Each channel starts requests while it has fewer than its adaptive limit in flight, never more than
+         * {@code maxInFlightPerChannel}; the rest wait in that channel's backlog. A worker only blocks when the
+         * backlog of the channel it is feeding has grown past the limit.
+         */
+        public NotificationDispatcherService(final int workerThreadCount, final DispatchMode dispatchMode,
+                                             final AsyncNotificationSender sender, final int maxBatchSize,
+                                             final long maxLingerMillis, final Path journalDirectory,
+                                             final long dedupWindowMillis, final int maxInFlightPerChannel) {
+            this.journal = journalDirectory == null ? null : new NotificationJournal(journalDirectory);
+            this.sender = sender;
+            this.channels = new EnumMap<>(Channel.class);
+            for (Channel channel : Channel.values()) {
+                channels.put(channel, new ChannelDispatch(new AdaptiveConcurrencyLimit(maxInFlightPerChannel)));
+            }
+            this.maxBatchSize = Math.max(1, maxBatchSize);
+            this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+            this.jobQueue = new FairJobQueue();
+            this.dispatchMode = dispatchMode;
+            this.workerPool = dispatchMode == DispatchMode.WORKER_POOL
+                    ? Executors.newFixedThreadPool(workerThreadCount)
+                    : newTaskPerJobExecutor();
+            this.retryTimer = new HashedWheelTimer("notification-retry-timer");
+            this.circuitBreakers = new CircuitBreakers(retryTimer, this::enqueue);
+            this.deadLetters = new DeadLetterStore(DeadLetterStore.DEFAULT_CAPACITY, this::evicted);
+            this.deduplicator = new JobDeduplicator(dedupWindowMillis, TimeUnit.MILLISECONDS);
+            this.metrics = new DispatcherMetrics();
+            this.inFlight = new AtomicInteger(0);
             this.workerThreadCount = workerThreadCount;
-            this.retryThreadCount = retryThreadCount;
+        }
+
+        /**
+         * Virtual threads need Java 21; on older runtimes this falls back to a cached pool of platform threads.
+         */
+        private static ExecutorService newTaskPerJobExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool();
+            }
         }
 
         public void start() {
+            if (journal != null) {
+                recover();
+            }
+            if (dispatchMode != DispatchMode.WORKER_POOL) {
+                return;
+            }
             for(int i=0; i<workerThreadCount; i++) {
                 workerPool.submit(this::workerJob);
             }
         }
 
         public void sendMessage(final NotificationJob job) {
-            if(jobSet.contains(job.id)) {
+            if(!deduplicator.firstSeen(job.id)) {
                 System.out.println("🔁 Duplicate detected, skipping notification: " + job.id);
                 return;
             }
 
-            jobSet.add(job.id);
+            metrics.submitted.increment();
+            job.submittedAt = System.nanoTime();
+            if (journal == null) {
+                enqueue(job);
+                return;
+            }
+            // dispatched only once the submission is on disk; the journal fsyncs submissions in groups
+            journal.submitted(job).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    System.out.println("Job could not be journaled, dropping id: " + job.id + " " + error);
+                } else {
+                    enqueue(job);
+                }
+            });
+        }
+
+        private void recover() {
+            for (NotificationJob job : journal.recoveredJobs()) {
+                deduplicator.firstSeen(job.id);
+                job.submittedAt = System.nanoTime();
+                if (job.status == Status.FAILED) {
+                    deadLetters.add(job, job.failureReason);
+                } else {
+                    job.status = Status.SUBMITTED;
+                    enqueue(job);
+                }
+            }
+            System.out.println("Recovered " + journal.recoveredJobs().size() + " jobs from the journal");
+        }
+
+        private void evicted(final DeadLetterStore.DeadLetter deadLetter) {
+            if (journal != null) {
+                // gone for good: without an ack the journal would keep relocating it and bring it back on restart
+                journal.completed(deadLetter.job);
+            }
+        }
+
+        private void enqueue(final NotificationJob job) {
             jobQueue.offer(job);
+            if (dispatchMode == DispatchMode.TASK_PER_JOB) {
+                // the task takes whatever is at the head, so the queue still decides the order
+                workerPool.execute(this::processNext);
+            }
+        }
+
+        private void processNext() {
+            final NotificationJob job = jobQueue.poll();
+            if (job != null) {
+                final List<NotificationJob> batch = new ArrayList<>();
+                batch.add(job);
+                // no lingering here: the next task is already on its way for whatever arrives later
+                for (NotificationJob next; batch.size() < maxBatchSize && (next = jobQueue.poll()) != null; ) {
+                    batch.add(next);
+                }
+                process(batch);
+            }
         }
 
         public void workerJob() {
             try {
+                final List<NotificationJob> batch = new ArrayList<>(maxBatchSize);
                 while (true) {
-                    final NotificationJob job = jobQueue.poll();
-                    if (job == null) {
-                        System.out.println("Current queue is empty");
-                        Thread.sleep(100);
-                        continue;
-                    }
-                    job.status = Status.IN_PROGRESS;
-                    final boolean result = send(job);
-                    if(result) {
-                        successCounter.incrementAndGet();
-                        System.out.println("Job sent successfully id: " + job.id + " Thread : "+Thread.currentThread().getName());
-                        job.status = Status.COMPLETED;
-                    } else {
-                        failedCounter.incrementAndGet();
-                        if(job.retryCount < RETRY_COUNT) {
-                            System.out.println("Job sent failed, retry count is " + job.retryCount + " retrying...");
-                            job.retryCount = job.retryCount + 1;
-                            scheduleJobForRetry(job, RETRY_DELAY);
-                        } else {
-                            System.out.println("Job sent failed, retry count is " + job.retryCount + " " +
-                                    "Moving the message to dead letter queue...");
-                            job.status = Status.FAILED;
-                            deadLetterQueue.add(job);
+                    batch.add(jobQueue.take());
+                    final long deadline = System.nanoTime() + maxLingerNanos;
+                    while (batch.size() < maxBatchSize) {
+                        final NotificationJob next = jobQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
                         }
-
+                        batch.add(next);
                     }
+                    process(batch);
+                    batch.clear();
                 }
             } catch (InterruptedException exception) {
-                System.out.println(exception.getMessage());
+                // shutdown() interrupts idle workers
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(final List<NotificationJob> batch) {
+            final long now = System.nanoTime();
+            for (NotificationJob job : batch) {
+                metrics.queueWait.record(now - job.enqueuedAt);
+            }
+            // jobs behind an open circuit are parked right here and never reach the sender
+            batch.removeIf(job -> !circuitBreakers.admit(job));
+            if (batch.isEmpty()) {
+                return;
+            }
+            inFlight.addAndGet(batch.size());
+            final Map<Channel, List<NotificationJob>> byChannel = new EnumMap<>(Channel.class);
+            for (NotificationJob job : batch) {
+                job.status = Status.IN_PROGRESS;
+                byChannel.computeIfAbsent(job.channel, channel -> new ArrayList<>()).add(job);
+            }
+            for (Map.Entry<Channel, List<NotificationJob>> entry : byChannel.entrySet()) {
+                channels.get(entry.getKey()).submit(entry.getValue());
+            }
+        }
+
+        private void complete(final NotificationJob job, final boolean result, final FailureReason reason) {
+            inFlight.decrementAndGet();
+            if(result) {
+                metrics.succeeded.increment();
+                metrics.endToEnd.record(System.nanoTime() - job.submittedAt);
+                System.out.println("Job sent successfully id: " + job.id + " Thread : "+Thread.currentThread().getName());
+                job.status = Status.COMPLETED;
+                if (journal != null) {
+                    journal.completed(job);
+                }
+                circuitBreakers.onSuccess(job);
+            } else {
+                metrics.failedAttempts.increment();
+                circuitBreakers.onFailure(job, reason);
+                if(job.retryCount < RETRY_COUNT) {
+                    System.out.println("Job sent failed, retry count is " + job.retryCount + " retrying...");
+                    job.retryCount = job.retryCount + 1;
+                    if (journal != null) {
+                        journal.retried(job);
+                    }
+                    // the attempt still counts, but an open circuit decides when it goes out again
+                    if (!circuitBreakers.parkIfOpen(job)) {
+                        scheduleJobForRetry(job);
+                    }
+                } else {
+                    System.out.println("Job sent failed, retry count is " + job.retryCount + " " +
+                            "Moving the message to dead letter queue...");
+                    job.status = Status.FAILED;
+                    job.failureReason = reason;
+                    if (journal != null) {
+                        journal.deadLettered(job);
+                    }
+                    deadLetters.add(job, reason);
+                    metrics.deadLettered.increment();
+                    metrics.endToEnd.record(System.nanoTime() - job.submittedAt);
+                }
 
             }
         }
 
-        private void scheduleJobForRetry(final NotificationJob job, final int delay) {
-            retryCounter.incrementAndGet();
-            retryScheduler.schedule(() -> {
-                jobQueue.offer(job);
+        /**
+         * Exponential backoff from {@code RETRY_DELAY} up to {@code MAX_RETRY_DELAY}, with half of the delay
+         * randomised so jobs that failed together do not come back together.
+         */
+        private void scheduleJobForRetry(final NotificationJob job) {
+            metrics.retries.increment();
+            final long failedAt = System.nanoTime();
+            final long backoff = Math.min((long) RETRY_DELAY << Math.min(job.retryCount - 1, 20), MAX_RETRY_DELAY);
+            final long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            retryTimer.schedule(() -> {
+                metrics.retryDelay.record(System.nanoTime() - failedAt);
+                enqueue(job);
             }, delay, TimeUnit.MILLISECONDS);
         }
 
-        private boolean send(NotificationJob job) {
-            return new Random().nextBoolean();
+        /**
+         * Requests for one channel that are waiting for, or holding, a slot under its concurrency limit. Whoever gets
+         * into {@link #drain()} first starts requests for everyone, so a sender that completes inline does not
+         * recurse and no request is left behind by a racing completion.
+         */
+        private class ChannelDispatch {
+            private final AdaptiveConcurrencyLimit limit;
+            private final Queue<List<NotificationJob>> backlog;
+            // set while this thread is in drain(): a blocking sender completes inline and would recurse otherwise
+            private final ThreadLocal<Boolean> draining;
+
+            ChannelDispatch(final AdaptiveConcurrencyLimit limit) {
+                this.limit = limit;
+                this.backlog = new ConcurrentLinkedQueue<>();
+                this.draining = ThreadLocal.withInitial(() -> Boolean.FALSE);
+            }
+
+            /**
+             * Sends the request right away on the calling worker if the limit has room and nothing is queued ahead
+             * of it. Only requests over the limit go to the backlog, which completions and later submitters drain.
+             */
+            void submit(final List<NotificationJob> request) {
+                if (backlog.isEmpty() && limit.tryAcquire()) {
+                    send(request);
+                    return;
+                }
+                backlog.offer(request);
+                drain();
+                synchronized (this) {
+                    try {
+                        while (backlog.size() > limit.getLimit()) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        // the request is queued already, it goes out with the next completion
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            /**
+             * Any number of threads may drain at once; each request taken off the backlog holds a permit of its own.
+             */
+            private void drain() {
+                if (draining.get()) {
+                    return;
+                }
+                draining.set(Boolean.TRUE);
+                boolean sent = false;
+                try {
+                    while (!backlog.isEmpty() && limit.tryAcquire()) {
+                        final List<NotificationJob> request = backlog.poll();
+                        if (request == null) {
+                            limit.cancel();
+                            break;
+                        }
+                        sent = true;
+                        send(request);
+                    }
+                } finally {
+                    draining.set(Boolean.FALSE);
+                }
+                if (sent) {
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+
+            private void send(final List<NotificationJob> request) {
+                final long sendStart = System.nanoTime();
+                CompletableFuture<boolean[]> future;
+                try {
+                    future = request.size() == 1
+                            ? sender.sendAsync(request.get(0)).thenApply(result -> new boolean[] {result})
+                            : sender.sendBatchAsync(request.get(0).channel, request);
+                } catch (RuntimeException e) {
+                    future = new CompletableFuture<>();
+                    future.completeExceptionally(e);
+                }
+                future.whenComplete((results, error) -> {
+                    // a request without one answer per job failed as a whole, like one that threw
+                    final boolean failed = error != null || results == null || results.length != request.size();
+                    final long rtt = System.nanoTime() - sendStart;
+                    limit.release(rtt, failed);
+                    try {
+                        metrics.send.record(rtt);
+                        if (failed && error == null) {
+                            System.out.println("Sender returned " + (results == null ? "no" : results.length)
+                                    + " results for " + request.size() + " jobs on " + request.get(0).channel);
+                        }
+                        // a failed request sends every item down the retry path
+                        final boolean[] outcome = failed ? new boolean[request.size()] : results;
+                        final FailureReason reason = failed ? FailureReason.SEND_ERROR : FailureReason.REJECTED;
+                        for (int i = 0; i < request.size(); i++) {
+                            try {
+                                complete(request.get(i), outcome[i], reason);
+                            } catch (RuntimeException e) {
+                                // complete() releases the in-flight slot first; one bad job must not strand the rest
+                                System.out.println("Could not complete job " + request.get(i).id + ": " + e);
+                            }
+                        }
+                    } finally {
+                        drain();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Starts putting dead letters that match {@code filter} back on the job queue, {@code jobsPerSecond} at most,
+         * with a fresh set of retries. See {@link DeadLetterStore.DeadLetter#forRecipient} and
+         * {@link DeadLetterStore.DeadLetter#withReason} for the usual filters.
+         */
+        public DeadLetterReplay replayDeadLetters(final Predicate<DeadLetterStore.DeadLetter> filter,
+                                                  final int jobsPerSecond,
+                                                  final Consumer<DeadLetterReplay.Progress> progress) {
+            final DeadLetterReplay replay = new DeadLetterReplay(deadLetters, filter, jobsPerSecond, this::replay);
+            replay.start(progress);
+            return replay;
+        }
+
+        private void replay(final NotificationJob job) {
+            job.retryCount = 0;
+            job.status = Status.SUBMITTED;
+            job.failureReason = null;
+            job.submittedAt = System.nanoTime();
+            if (journal != null) {
+                // journaled again as a live job, so a restart does not put it back in the dead letter queue
+                journal.submitted(job);
+            }
+            enqueue(job);
+        }
+
+        /**
+         * Counters, stage latencies and gauges as of now; cheap enough to poll from a metrics exporter.
+         */
+        public DispatcherMetrics.Snapshot getMetrics() {
+            return metrics.snapshot(jobQueue.size(), inFlight.get(), deadLetters.size(),
+                    circuitBreakers.parkedCount(), circuitBreakers.openCount(), jobQueue.laneStats());
         }
 
         public void printMetrics() {
             System.out.println(":: Notification Dispatcher Service Summary ::");
-            System.out.println(":: Success Counter ::: " + successCounter.get());
-            System.out.println(":: Retry Counter ::: " + retryCounter.get());
-            System.out.println(":: Failed Counter ::: " + failedCounter.get());
+            System.out.println(getMetrics());
         }
 
         public void shutdown() {
-            workerPool.shutdown();
-            retryScheduler.shutdown();
+            // workers are parked in take(), interrupting them is how they stop
+            workerPool.shutdownNow();
+            retryTimer.stop();
+            if (journal != null) {
+                // jobs still waiting for a retry stay in the journal and come back on the next start()
+                journal.close();
+            }
         }
     }
 
     public static void main(String[] args)  {
-        NotificationDispatcherService notificationDispatcherService = new NotificationDispatcherService(3, 3);
+        NotificationDispatcherService notificationDispatcherService = new NotificationDispatcherService(3);
         notificationDispatcherService.start();
         notificationDispatcherService.printMetrics();
 
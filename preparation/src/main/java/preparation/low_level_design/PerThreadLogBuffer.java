@@ -0,0 +1,258 @@
+package preparation.low_level_design;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Gives every producer thread its own single-writer ring, so publishing is a plain slot write followed by an
+ * ordered store of the tail: no CAS and no cache line shared with other producers. The consumer merges the rings by
+ * timestamp, so the output is one ordered stream.
+ *
+ * <p>A thread gets a ring the first time it logs. Once the thread has died and its ring has been drained, the
+ * consumer hands the ring back for the next new thread. At most {@code maxRings} rings are ever allocated; threads
+ * that find them all taken share one more ring under a lock. Memory therefore stays at
+ * {@code (maxRings + 1) * capacityPerThread} slots however many threads log, virtual ones included.
+ */
+class PerThreadLogBuffer implements LogBuffer {
+    static final int DEFAULT_MAX_RINGS = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final int capacityPerThread;
+    private final int maxRings;
+    private final ThreadLocal<ThreadRing> local;
+    // for threads beyond maxRings; publishers hold its monitor, so it still has one writer at a time
+    private final ThreadRing shared;
+    // guarded by this
+    private final ArrayDeque<ThreadRing> free;
+    private int allocated;
+    private volatile ThreadRing[] rings;
+
+    PerThreadLogBuffer(final int capacityPerThread) {
+        this(capacityPerThread, DEFAULT_MAX_RINGS);
+    }
+
+    PerThreadLogBuffer(final int capacityPerThread, final int maxRings) {
+        if (maxRings < 1) {
+            throw new IllegalArgumentException("Invalid ring count " + maxRings);
+        }
+        this.capacityPerThread = Integer.highestOneBit(Math.max(2, capacityPerThread) * 2 - 1);
+        this.maxRings = maxRings;
+        this.local = ThreadLocal.withInitial(this::register);
+        this.shared = new ThreadRing(this.capacityPerThread);
+        this.free = new ArrayDeque<>();
+        this.rings = new ThreadRing[]{shared};
+    }
+
+    @Override
+    public boolean tryPublish(final LogLevel logLevel, final String message, final Object[] args, final long timestamp,
+                              final String threadName) {
+        final ThreadRing ring = local.get();
+        if (ring == shared) {
+            synchronized (shared) {
+                return shared.tryPublish(logLevel, message, args, timestamp, threadName);
+            }
+        }
+        return ring.tryPublish(logLevel, message, args, timestamp, threadName);
+    }
+
+    /**
+     * Repeatedly takes the oldest head among all rings. Every ring is only read up to the tail it had when the call
+     * started, so a busy producer cannot keep the others waiting.
+     */
+    @Override
+    public int drain(final Consumer<LogMessage> handler, final int maxBatch) {
+        final ThreadRing[] snapshot = rings;
+        for (ThreadRing ring : snapshot) {
+            ring.beginDrain();
+        }
+        int count = 0;
+        try {
+            while (count < maxBatch) {
+                ThreadRing oldest = null;
+                for (ThreadRing ring : snapshot) {
+                    if (ring.hasNext() && (oldest == null || ring.peekTimestamp() < oldest.peekTimestamp())) {
+                        oldest = ring;
+                    }
+                }
+                if (oldest == null) {
+                    break;
+                }
+                count++;
+                oldest.consumeNext(handler);
+            }
+        } finally {
+            // also after a throwing handler: the message it failed on has been consumed
+            for (ThreadRing ring : snapshot) {
+                ring.endDrain();
+            }
+        }
+        removeDeadRings(snapshot);
+        return count;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (ThreadRing ring : rings) {
+            size += ring.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int producerSize() {
+        return local.get().size();
+    }
+
+    @Override
+    public int capacity() {
+        return capacityPerThread;
+    }
+
+    @Override
+    public BooleanSupplier mark() {
+        final ThreadRing[] snapshot = rings;
+        final long[] tails = new long[snapshot.length];
+        for (int i = 0; i < snapshot.length; i++) {
+            tails[i] = snapshot[i].tail;
+        }
+        return () -> {
+            for (int i = 0; i < snapshot.length; i++) {
+                if (snapshot[i].head < tails[i]) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private synchronized ThreadRing register() {
+        ThreadRing ring = free.poll();
+        if (ring == null) {
+            if (allocated == maxRings) {
+                return shared;
+            }
+            ring = new ThreadRing(capacityPerThread);
+            allocated++;
+        }
+        ring.claim(Thread.currentThread());
+        final ThreadRing[] current = rings;
+        final ThreadRing[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = ring;
+        rings = updated;
+        return ring;
+    }
+
+    private void removeDeadRings(final ThreadRing[] snapshot) {
+        for (ThreadRing ring : snapshot) {
+            // liveness first: once the owner is dead nothing can be published after the emptiness check
+            final Thread owner = ring.owner;
+            if (owner != null && !owner.isAlive() && ring.size() == 0) {
+                release(ring);
+            }
+        }
+    }
+
+    private synchronized void release(final ThreadRing ring) {
+        final ThreadRing[] current = rings;
+        final ThreadRing[] updated = new ThreadRing[current.length - 1];
+        int index = 0;
+        for (ThreadRing candidate : current) {
+            if (candidate != ring) {
+                updated[index++] = candidate;
+            }
+        }
+        rings = updated;
+        ring.owner = null;
+        free.offer(ring);
+    }
+
+    /**
+     * Single-producer / single-consumer ring. {@code tail} is only written by the owner thread and {@code head} only
+     * by the consumer, both with ordered stores. Both keep counting when the ring passes to a new owner, so a
+     * {@link #mark()} taken before the handover still holds.
+     */
+    static class ThreadRing {
+        private static final AtomicLongFieldUpdater<ThreadRing> TAIL =
+                AtomicLongFieldUpdater.newUpdater(ThreadRing.class, "tail");
+        private static final AtomicLongFieldUpdater<ThreadRing> HEAD =
+                AtomicLongFieldUpdater.newUpdater(ThreadRing.class, "head");
+
+        // null while free, and always for the shared ring
+        volatile Thread owner;
+        private final LogMessage[] slots;
+        private final int mask;
+        volatile long tail;
+        volatile long head;
+
+        // owner thread only
+        private long cachedHead;
+
+        // consumer thread only
+        private long drainCursor;
+        private long drainLimit;
+
+        ThreadRing(final int capacity) {
+            this.slots = new LogMessage[capacity];
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new LogMessage();
+            }
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Called on the new owner thread, which only starts publishing after this.
+         */
+        void claim(final Thread newOwner) {
+            owner = newOwner;
+            cachedHead = head;
+        }
+
+        boolean tryPublish(final LogLevel logLevel, final String message, final Object[] args, final long timestamp,
+                           final String threadName) {
+            final long sequence = tail;
+            if (sequence - cachedHead >= slots.length) {
+                cachedHead = head;
+                if (sequence - cachedHead >= slots.length) {
+                    return false;
+                }
+            }
+            slots[(int) sequence & mask].set(logLevel, message, args, timestamp, threadName);
+            TAIL.lazySet(this, sequence + 1);
+            return true;
+        }
+
+        void beginDrain() {
+            drainCursor = head;
+            drainLimit = tail;
+        }
+
+        boolean hasNext() {
+            return drainCursor < drainLimit;
+        }
+
+        long peekTimestamp() {
+            return slots[(int) drainCursor & mask].timestamp;
+        }
+
+        void consumeNext(final Consumer<LogMessage> handler) {
+            final LogMessage message = slots[(int) drainCursor & mask];
+            drainCursor++;
+            try {
+                handler.accept(message);
+            } finally {
+                message.clear();
+            }
+        }
+
+        void endDrain() {
+            HEAD.lazySet(this, drainCursor);
+        }
+
+        int size() {
+            return (int) (tail - head);
+        }
+    }
+}
@@ -1,63 +1,25 @@
 package preparation.low_level_design;
 
-import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 
 public interface RateLimiter {
-    boolean allowRequest(String clientId);
-}
-
-class BucketBasedRateLimiter implements RateLimiter {
-
-    private final Map<String, ClientBucket> map;
-    private final int refillRatePerSec;
-    private final int maxTokens;
-
-    public BucketBasedRateLimiter(final int refillRatePerSec, final int maxTokens) {
-        this.map = new ConcurrentHashMap<>();
-        this.refillRatePerSec = refillRatePerSec;
-        this.maxTokens = maxTokens;
-    }
 
-    @Override
-    public boolean allowRequest(String clientId) {
-        return map
-                .computeIfAbsent(clientId, id -> new ClientBucket(refillRatePerSec, maxTokens))
-                .isAllowed();
+    default boolean allowRequest(String clientId) {
+        return tryAcquire(clientId, 1);
     }
-}
-
-class ClientBucket {
-    private final int refillRatePerSec;
-    private final int maxTokens;
-    private double currentTokens;
-    private long lastRefillTime;
 
-    public ClientBucket(int refillRatePerSec, int maxTokens) {
-        this.refillRatePerSec = refillRatePerSec;
-        this.maxTokens = maxTokens;
-        this.currentTokens = maxTokens;
-        this.lastRefillTime = System.currentTimeMillis();
-    }
-
-    public synchronized boolean isAllowed() {
-        refill();
-        if (currentTokens >= 1) {
-            currentTokens -= 1;
-            return true;
-        }
-        return false;
-    }
+    /**
+     * Takes {@code permits} tokens at once (e.g. one per payload byte) if they are all available right now.
+     */
+    boolean tryAcquire(String clientId, int permits);
 
-    private void refill() {
-        long now = System.currentTimeMillis();
-        long millisSinceLast = now - lastRefillTime;
-        double tokensToAdd = (millisSinceLast / 1000.0) * refillRatePerSec;
+    /**
+     * Reserves {@code permits} tokens and returns a future that completes at the moment they are paid for.
+     * Waiters do not hold a thread; the completion is a single task on a shared scheduler.
+     */
+    CompletableFuture<Void> acquire(String clientId, int permits);
 
-        if (tokensToAdd > 0) {
-            currentTokens = Math.min(maxTokens, currentTokens + tokensToAdd);
-            lastRefillTime = now;
-        }
+    default CompletableFuture<Void> acquire(String clientId) {
+        return acquire(clientId, 1);
     }
 }
@@ -0,0 +1,213 @@
+package preparation.low_level_design;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Decision counters for a rate limiter. The allowed path is a single striped {@link LongAdder} increment; only
+ * denials and delayed reservations pay for the heavy-hitter bookkeeping, which is striped by client as well.
+ */
+public class RateLimiterMetrics {
+    static final int DEFAULT_TOP_K = 16;
+
+    private final LongAdder allowed;
+    private final LongAdder denied;
+    private final LongAdder delayed;
+    private final HeavyHitters throttledClients;
+
+    public RateLimiterMetrics() {
+        this(DEFAULT_TOP_K);
+    }
+
+    public RateLimiterMetrics(final int topK) {
+        this.allowed = new LongAdder();
+        this.denied = new LongAdder();
+        this.delayed = new LongAdder();
+        this.throttledClients = new HeavyHitters(topK);
+    }
+
+    public void record(final String clientId, final boolean isAllowed) {
+        if (isAllowed) {
+            allowed.increment();
+        } else {
+            denied.increment();
+            throttledClients.offer(clientId);
+        }
+    }
+
+    /**
+     * Records an async reservation: allowed if it was paid for right away, delayed if the caller has to wait for
+     * it. A delayed client is throttled just like a denied one, so it counts towards the heavy hitters.
+     */
+    public void recordReservation(final String clientId, final long waitNanos) {
+        if (waitNanos <= 0) {
+            allowed.increment();
+        } else {
+            delayed.increment();
+            throttledClients.offer(clientId);
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(allowed.sum(), denied.sum(), delayed.sum(), throttledClients.top());
+    }
+
+    /**
+     * Returns the counts since the previous reset and starts a new window. The counters and the tracker are reset
+     * one after another without stopping callers, so a decision racing with the reset may be counted in either
+     * window, and its counter and heavy-hitter entry may end up in different ones. Nothing is counted twice or lost.
+     */
+    public Snapshot snapshotAndReset() {
+        return new Snapshot(allowed.sumThenReset(), denied.sumThenReset(), delayed.sumThenReset(),
+                throttledClients.topThenReset());
+    }
+
+    public ScheduledFuture<?> reportEvery(final long period, final TimeUnit unit, final Consumer<Snapshot> sink) {
+        return Reporter.INSTANCE.scheduleAtFixedRate(() -> sink.accept(snapshotAndReset()), period, period, unit);
+    }
+
+    static class Reporter {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "rate-limiter-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static class Snapshot {
+        final long allowed;
+        final long denied;
+        final long delayed;
+        final List<HeavyHitter> topThrottled;
+
+        Snapshot(final long allowed, final long denied, final long delayed, final List<HeavyHitter> topThrottled) {
+            this.allowed = allowed;
+            this.denied = denied;
+            this.delayed = delayed;
+            this.topThrottled = topThrottled;
+        }
+
+        public double denialRatio() {
+            final long total = allowed + denied;
+            return total == 0 ? 0 : (double) denied / total;
+        }
+
+        @Override
+        public String toString() {
+            return "allowed=" + allowed + " denied=" + denied + " delayed=" + delayed + " topThrottled=" + topThrottled;
+        }
+    }
+
+    public static class HeavyHitter {
+        final String clientId;
+        final long count;
+        final long error;
+
+        HeavyHitter(final String clientId, final long count, final long error) {
+            this.clientId = clientId;
+            this.count = count;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return clientId + "=" + count + "(+/-" + error + ")";
+        }
+    }
+
+    /**
+     * Space-Saving top-K: at most {@code capacity} counters. An unseen client takes over the smallest counter and
+     * inherits its count as the error bound, so every client denied more than total/capacity times is kept.
+     *
+     * <p>Clients are hashed to one of {@code STRIPES} independent summaries, each with its own lock, so a throttling
+     * storm spreads over the stripes instead of queueing on one monitor. A client only ever lands in one stripe, which
+     * keeps each summary's guarantee; {@link #top()} merges them and keeps the {@code capacity} largest.
+     */
+    static class HeavyHitters {
+        static final int STRIPES = 8;
+
+        private final int capacity;
+        private final Stripe[] stripes;
+
+        HeavyHitters(final int capacity) {
+            this.capacity = capacity;
+            this.stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(capacity);
+            }
+        }
+
+        void offer(final String clientId) {
+            final int hash = clientId.hashCode();
+            stripes[(hash ^ hash >>> 16) & (STRIPES - 1)].offer(clientId);
+        }
+
+        List<HeavyHitter> top() {
+            return merge(false);
+        }
+
+        List<HeavyHitter> topThenReset() {
+            return merge(true);
+        }
+
+        private List<HeavyHitter> merge(final boolean reset) {
+            final List<HeavyHitter> result = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.drainTo(result, reset);
+            }
+            result.sort((a, b) -> Long.compare(b.count, a.count));
+            return result.size() > capacity ? new ArrayList<>(result.subList(0, capacity)) : result;
+        }
+    }
+
+    static class Stripe {
+        private final int capacity;
+        private final Map<String, long[]> counters;
+
+        Stripe(final int capacity) {
+            this.capacity = capacity;
+            this.counters = new HashMap<>(capacity * 2);
+        }
+
+        synchronized void offer(final String clientId) {
+            final long[] counter = counters.get(clientId);
+            if (counter != null) {
+                counter[0]++;
+                return;
+            }
+            if (counters.size() < capacity) {
+                counters.put(clientId, new long[]{1, 0});
+                return;
+            }
+            String minKey = null;
+            long[] min = null;
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                if (min == null || entry.getValue()[0] < min[0]) {
+                    minKey = entry.getKey();
+                    min = entry.getValue();
+                }
+            }
+            counters.remove(minKey);
+            min[1] = min[0];
+            min[0]++;
+            counters.put(clientId, min);
+        }
+
+        synchronized void drainTo(final List<HeavyHitter> result, final boolean reset) {
+            for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+                result.add(new HeavyHitter(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+            }
+            if (reset) {
+                counters.clear();
+            }
+        }
+    }
+}
@@ -20,10 +20,20 @@ public class RateLimiterSlidingWindow {
     static class ReteLimiterService {
         final Map<String, Queue<Request>> cache;
         private final int limit;
+        private final RateLimiterMetrics metrics;
 
         public ReteLimiterService(final int limit) {
+            this(limit, new RateLimiterMetrics());
+        }
+
+        public ReteLimiterService(final int limit, final RateLimiterMetrics metrics) {
             this.cache = new ConcurrentHashMap<>();
             this.limit = limit;
+            this.metrics = metrics;
+        }
+
+        public RateLimiterMetrics getMetrics() {
+            return metrics;
         }
 
         private void eviction(final String client) {
@@ -44,8 +54,10 @@ public class RateLimiterSlidingWindow {
             final List<Request> requests = new ArrayList<>(cache.getOrDefault(client, new LinkedList<>()));
             if(requests.size() + 1 <= limit) {
                 cache.computeIfAbsent(client, key -> new LinkedList<>()).add(new Request(client, System.currentTimeMillis()));
+                metrics.record(client, true);
                 return true;
             }
+            metrics.record(client, false);
             return false;
         }
     }
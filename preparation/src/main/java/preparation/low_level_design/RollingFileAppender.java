@@ -0,0 +1,142 @@
+package preparation.low_level_design;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Appends each batch to the active segment with one {@link FileChannel#write} and starts a new segment once the
+ * active one exceeds {@code maxSegmentBytes} or has been open for {@code maxSegmentMillis}.
+ */
+class RollingFileAppender extends ByteBufferAppender {
+    static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    static final long DEFAULT_SEGMENT_BYTES = 128L << 20;
+    static final long DEFAULT_SEGMENT_MILLIS = 60 * 60 * 1000L;
+
+    enum FsyncPolicy {
+        NEVER,
+        ON_ROLL,
+        EVERY_BATCH
+    }
+
+    private final Path directory;
+    private final String baseName;
+    private final long maxSegmentBytes;
+    private final long maxSegmentMillis;
+    private final FsyncPolicy fsyncPolicy;
+    private final Consumer<Path> rolledSegmentListener;
+
+    private FileChannel channel;
+    private Path segment;
+    private long segmentBytes;
+    private long segmentOpenedAt;
+    private int segmentSequence;
+
+    RollingFileAppender(final Path directory, final String baseName) {
+        this(directory, baseName, new TextLogEncoder(), DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_MILLIS,
+                FsyncPolicy.ON_ROLL, DEFAULT_BUFFER_SIZE);
+    }
+
+    RollingFileAppender(final Path directory, final String baseName, final LogEncoder encoder,
+                        final long maxSegmentBytes, final long maxSegmentMillis, final FsyncPolicy fsyncPolicy,
+                        final int bufferSize) {
+        this(directory, baseName, encoder, maxSegmentBytes, maxSegmentMillis, fsyncPolicy, bufferSize, segment -> {
+        });
+    }
+
+    /**
+     * {@code rolledSegmentListener} is called on the flusher thread with every segment that has just been closed,
+     * e.g. {@link SegmentCompressor#submit(Path)}; it must not block.
+     */
+    RollingFileAppender(final Path directory, final String baseName, final LogEncoder encoder,
+                        final long maxSegmentBytes, final long maxSegmentMillis, final FsyncPolicy fsyncPolicy,
+                        final int bufferSize, final Consumer<Path> rolledSegmentListener) {
+        super(encoder, ByteBuffer.allocateDirect(bufferSize));
+        this.rolledSegmentListener = rolledSegmentListener;
+        this.directory = directory;
+        this.baseName = baseName;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentMillis = maxSegmentMillis;
+        this.fsyncPolicy = fsyncPolicy;
+        try {
+            Files.createDirectories(directory);
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected void write(final ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            segmentBytes += channel.write(bytes);
+        }
+        if (segmentBytes >= maxSegmentBytes) {
+            roll();
+        }
+    }
+
+    @Override
+    public void endOfBatch() {
+        super.endOfBatch();
+        try {
+            if (fsyncPolicy == FsyncPolicy.EVERY_BATCH) {
+                channel.force(false);
+            }
+            if (segmentBytes > 0 && System.currentTimeMillis() - segmentOpenedAt >= maxSegmentMillis) {
+                roll();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.endOfBatch();
+        try {
+            closeSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Path currentSegment() {
+        return segment;
+    }
+
+    private void roll() throws IOException {
+        final Path rolled = segment;
+        closeSegment();
+        openSegment();
+        rolledSegmentListener.accept(rolled);
+    }
+
+    private void openSegment() throws IOException {
+        segmentOpenedAt = System.currentTimeMillis();
+        segment = directory.resolve(String.format("%s-%d-%04d.%s", baseName, segmentOpenedAt, segmentSequence++,
+                encoder.fileExtension()));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+
+        final ByteBuffer header = ByteBuffer.allocate(LogEncoder.MAX_SEGMENT_HEADER_BYTES);
+        encoder.startSegment(header, segmentOpenedAt);
+        header.flip();
+        while (header.hasRemaining()) {
+            segmentBytes += channel.write(header);
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            channel.force(false);
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,222 @@
+package preparation.low_level_design;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses rolled {@link RollingFileAppender} segments on a low-priority background thread, so the flusher only
+ * pays for handing over a path.
+ *
+ * <p>A segment {@code x.log} becomes {@code x.log.gz}: a series of independent gzip members of {@code BLOCK_SIZE}
+ * uncompressed bytes each, which plain {@code zcat} reads as one stream. {@code x.log.gz.idx} lists the
+ * {@code (uncompressedOffset, compressedOffset)} of every block, so a block can be located and inflated on its own
+ * with {@link #readBlock(Path, int)}.
+ */
+class SegmentCompressor {
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_BYTES = 8;
+
+    private final ExecutorService worker;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final ByteBuffer input;
+    private final byte[] output;
+
+    private final AtomicLong segmentCounter;
+    private final AtomicLong uncompressedBytes;
+    private final AtomicLong compressedBytes;
+    private final AtomicLong compressionNanos;
+
+    SegmentCompressor() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    SegmentCompressor(final int level) {
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "log-segment-compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.deflater = new Deflater(level, true);
+        this.crc = new CRC32();
+        this.input = ByteBuffer.allocate(BLOCK_SIZE);
+        this.output = new byte[BLOCK_SIZE + BLOCK_SIZE / 2];
+        this.segmentCounter = new AtomicLong();
+        this.uncompressedBytes = new AtomicLong();
+        this.compressedBytes = new AtomicLong();
+        this.compressionNanos = new AtomicLong();
+    }
+
+    /**
+     * Queues the segment and returns immediately; meant to be passed to {@link RollingFileAppender} as its rolled
+     * segment listener.
+     */
+    void submit(final Path segment) {
+        worker.execute(() -> {
+            try {
+                compress(segment);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void compress(final Path segment) throws IOException {
+        final long start = System.nanoTime();
+        final Path target = segment.resolveSibling(segment.getFileName() + ".gz");
+        final Path temp = segment.resolveSibling(segment.getFileName() + ".gz.tmp");
+        final ByteBuffer index = ByteBuffer.allocate((int) (Files.size(segment) / BLOCK_SIZE + 1) * 16);
+        long rawOffset = 0;
+        long compressedOffset = 0;
+
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (true) {
+                input.clear();
+                while (input.hasRemaining() && in.read(input) > 0) {
+                    // fill a whole block unless the segment ends
+                }
+                if (input.position() == 0) {
+                    break;
+                }
+                index.putLong(rawOffset).putLong(compressedOffset);
+                final int memberBytes = writeMember(out, input.array(), input.position());
+                rawOffset += input.position();
+                compressedOffset += memberBytes;
+            }
+            out.force(false);
+        }
+        index.flip();
+        try (FileChannel idx = FileChannel.open(segment.resolveSibling(target.getFileName() + ".idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (index.hasRemaining()) {
+                idx.write(index);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(segment);
+
+        segmentCounter.incrementAndGet();
+        uncompressedBytes.addAndGet(rawOffset);
+        compressedBytes.addAndGet(compressedOffset);
+        compressionNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    private int writeMember(final FileChannel out, final byte[] block, final int length) throws IOException {
+        int written = write(out, ByteBuffer.wrap(GZIP_HEADER));
+
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            final int produced = deflater.deflate(output);
+            written += write(out, ByteBuffer.wrap(output, 0, produced));
+        }
+
+        crc.reset();
+        crc.update(block, 0, length);
+        final ByteBuffer trailer = ByteBuffer.allocate(GZIP_TRAILER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue()).putInt(length).flip();
+        return written + write(out, trailer);
+    }
+
+    private static int write(final FileChannel out, final ByteBuffer bytes) throws IOException {
+        final int length = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        return length;
+    }
+
+    /**
+     * Inflates a single block of a compressed segment using its index, without reading the blocks before it.
+     */
+    static byte[] readBlock(final Path compressed, final int block) throws IOException {
+        final ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(
+                compressed.resolveSibling(compressed.getFileName() + ".idx")));
+        final int blocks = index.remaining() / 16;
+        if (block < 0 || block >= blocks) {
+            throw new IllegalArgumentException("Block " + block + " out of range, segment has " + blocks);
+        }
+        try (FileChannel in = FileChannel.open(compressed, StandardOpenOption.READ)) {
+            final long from = index.getLong(block * 16 + 8);
+            final long to = block + 1 < blocks ? index.getLong((block + 1) * 16 + 8) : in.size();
+            final ByteBuffer member = ByteBuffer.allocate((int) (to - from));
+            while (member.hasRemaining() && in.read(member, from + member.position()) > 0) {
+                // read the whole member
+            }
+            final byte[] bytes = member.array();
+            final int rawLength = ByteBuffer.wrap(bytes, bytes.length - 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            final Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(bytes, GZIP_HEADER.length, bytes.length - GZIP_HEADER.length - GZIP_TRAILER_BYTES);
+                final byte[] raw = new byte[rawLength];
+                inflater.inflate(raw);
+                return raw;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block " + block + " in " + compressed, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(segmentCounter.get(), uncompressedBytes.get(), compressedBytes.get(), compressionNanos.get());
+    }
+
+    void shutdown() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deflater.end();
+    }
+
+    static class Stats {
+        final long segments;
+        final long uncompressedBytes;
+        final long compressedBytes;
+        final long nanos;
+
+        Stats(final long segments, final long uncompressedBytes, final long compressedBytes, final long nanos) {
+            this.segments = segments;
+            this.uncompressedBytes = uncompressedBytes;
+            this.compressedBytes = compressedBytes;
+            this.nanos = nanos;
+        }
+
+        double ratio() {
+            return compressedBytes == 0 ? 0 : (double) uncompressedBytes / compressedBytes;
+        }
+
+        double megabytesPerSecond() {
+            return nanos == 0 ? 0 : uncompressedBytes / (1024.0 * 1024.0) / (nanos / 1_000_000_000.0);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("segments=%d in=%d out=%d ratio=%.2f throughput=%.1fMB/s",
+                    segments, uncompressedBytes, compressedBytes, ratio(), megabytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package preparation.low_level_design;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out unique ids for short codes without a shared counter on the hot path: every thread leases a block of
+ * {@code blockSize} sequence numbers and only touches the shared counter again when its block runs out.
+ *
+ * <p>Optionally the id carries {@code shardBits} low bits of shard id, Snowflake-style, so several nodes can allocate
+ * independently without ever colliding. Also optionally, the id is passed through a keyed Feistel permutation over
+ * {@code ID_BITS} bits, which is a bijection: codes stop being guessable or clustered and stay collision-free, and
+ * {@link #unscramble(long)} recovers the plain id.
+ */
+class ShortCodeIdAllocator {
+    static final int DEFAULT_BLOCK_SIZE = 1024;
+    /** Ids never exceed this many bits, at most nine Base62 characters. */
+    static final int ID_BITS = 48;
+    private static final int HALF_BITS = ID_BITS / 2;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+
+    private final AtomicLong nextBlock;
+    private final ThreadLocal<Lease> lease;
+    private final int blockSize;
+    private final int shardBits;
+    private final long shardId;
+    private final long[] roundKeys;
+
+    ShortCodeIdAllocator() {
+        this(DEFAULT_BLOCK_SIZE, 0, 0, 0);
+    }
+
+    /**
+     * {@code scrambleKey} 0 leaves ids sequential within a block. Every node of a deployment must use the same
+     * {@code shardBits} and key, with its own {@code shardId}.
+     */
+    ShortCodeIdAllocator(final int blockSize, final int shardBits, final int shardId, final long scrambleKey) {
+        if (blockSize < 1 || shardBits < 0 || shardBits > 16 || shardId < 0 || shardId >= 1 << shardBits) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize + " or shard " + shardId + " of "
+                    + shardBits + " bits");
+        }
+        this.blockSize = blockSize;
+        this.shardBits = shardBits;
+        this.shardId = shardId;
+        this.nextBlock = new AtomicLong(1);
+        this.lease = ThreadLocal.withInitial(Lease::new);
+        if (scrambleKey == 0) {
+            this.roundKeys = null;
+        } else {
+            this.roundKeys = new long[ROUNDS];
+            long key = scrambleKey;
+            for (int i = 0; i < ROUNDS; i++) {
+                key = mix(key + i);
+                roundKeys[i] = key;
+            }
+        }
+    }
+
+    long nextId() {
+        while (true) {
+            final Lease current = lease.get();
+            if (current.next == current.end) {
+                current.next = nextBlock.getAndAdd(blockSize);
+                current.end = current.next + blockSize;
+            }
+            final long sequence = current.next++;
+            if (sequence >= 1L << (ID_BITS - shardBits)) {
+                throw new IllegalStateException("Short code id space exhausted");
+            }
+            final long id = scramble(sequence << shardBits | shardId);
+            // the permutation maps exactly one input to 0, which has no Base62 code
+            if (id != 0) {
+                return id;
+            }
+        }
+    }
+
+    long scramble(final long id) {
+        if (roundKeys == null) {
+            return id;
+        }
+        long left = id >>> HALF_BITS;
+        long right = id & HALF_MASK;
+        for (long key : roundKeys) {
+            final long next = left ^ round(right, key);
+            left = right;
+            right = next;
+        }
+        return left << HALF_BITS | right;
+    }
+
+    long unscramble(final long id) {
+        if (roundKeys == null) {
+            return id;
+        }
+        long left = id >>> HALF_BITS;
+        long right = id & HALF_MASK;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            final long previous = right ^ round(left, roundKeys[i]);
+            right = left;
+            left = previous;
+        }
+        return left << HALF_BITS | right;
+    }
+
+    /**
+     * Position of the id in this shard's allocation order, dense enough to index arrays with.
+     */
+    long sequenceOf(final long id) {
+        return unscramble(id) >>> shardBits;
+    }
+
+    long shardOf(final long id) {
+        return unscramble(id) & ((1L << shardBits) - 1);
+    }
+
+    /**
+     * Whether {@code id} is one this allocator could have handed out, as opposed to another shard's or a made-up one.
+     */
+    boolean owns(final long id) {
+        return id > 0 && id < 1L << ID_BITS && shardOf(id) == shardId;
+    }
+
+    private static long round(final long half, final long key) {
+        return mix(half ^ key) & HALF_MASK;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * The calling thread's current block, {@code [next, end)}.
+     */
+    static class Lease {
+        long next;
+        long end;
+    }
+}
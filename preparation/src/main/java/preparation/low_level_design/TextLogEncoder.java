@@ -0,0 +1,68 @@
+package preparation.low_level_design;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@code [yyyy-MM-dd HH:mm:ss.SSS] [LEVEL] [thread] message}
+ */
+class TextLogEncoder implements LogEncoder {
+    private final TimestampCache timestamps = new TimestampCache();
+
+    @Override
+    public void encode(final LogMessage message, final ByteBuffer buffer) {
+        buffer.put((byte) '[').put(timestamps.format(message.timestamp)).put((byte) ']');
+        buffer.put((byte) ' ').put((byte) '[');
+        putUtf8(buffer, message.logLevel.name());
+        buffer.put((byte) ']').put((byte) ' ').put((byte) '[');
+        putUtf8(buffer, message.threadName);
+        buffer.put((byte) ']').put((byte) ' ');
+        if (message.args == null) {
+            putUtf8(buffer, message.message);
+        } else {
+            putFormatted(buffer, message.message, message.args);
+        }
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * Replaces each {@code {}} with the next argument; placeholders without an argument are kept as they are.
+     */
+    static void putFormatted(final ByteBuffer buffer, final String template, final Object[] args) {
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = template.indexOf("{}", start)) >= 0) {
+            putUtf8(buffer, template, start, placeholder);
+            putUtf8(buffer, LogEncoder.render(args[argIndex++]));
+            start = placeholder + 2;
+        }
+        putUtf8(buffer, template, start, template.length());
+    }
+
+    static void putUtf8(final ByteBuffer buffer, final CharSequence text) {
+        putUtf8(buffer, text, 0, text.length());
+    }
+
+    static void putUtf8(final ByteBuffer buffer, final CharSequence text, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package preparation.low_level_design;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats epoch millis as {@code yyyy-MM-dd HH:mm:ss.SSS}. The date-time part is only re-formatted when the second
+ * changes; within a second only the three millisecond digits are patched, and the same millisecond is free.
+ */
+class TimestampCache {
+    private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ZoneId zone;
+    private final byte[] bytes;
+    private long cachedSecond = Long.MIN_VALUE;
+    private long cachedMillis = Long.MIN_VALUE;
+
+    TimestampCache() {
+        this(ZoneId.systemDefault());
+    }
+
+    TimestampCache(final ZoneId zone) {
+        this.zone = zone;
+        this.bytes = new byte["yyyy-MM-dd HH:mm:ss.SSS".length()];
+    }
+
+    /**
+     * The returned array is reused by the next call.
+     */
+    byte[] format(final long millis) {
+        if (millis == cachedMillis) {
+            return bytes;
+        }
+        final long second = Math.floorDiv(millis, 1000);
+        if (second != cachedSecond) {
+            final byte[] prefix = SECONDS.format(Instant.ofEpochSecond(second).atZone(zone))
+                    .getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(prefix, 0, bytes, 0, prefix.length);
+            bytes[prefix.length] = '.';
+            cachedSecond = second;
+        }
+        final int fraction = (int) Math.floorMod(millis, 1000L);
+        bytes[bytes.length - 3] = (byte) ('0' + fraction / 100);
+        bytes[bytes.length - 2] = (byte) ('0' + fraction / 10 % 10);
+        bytes[bytes.length - 1] = (byte) ('0' + fraction % 10);
+        cachedMillis = millis;
+        return bytes;
+    }
+}
@@ -1,31 +1,73 @@
 package preparation.low_level_design;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 
-import static org.example.lld.TinyUrlService.URL.DEFAULT_TTL;
+import static preparation.low_level_design.TinyUrlService.URL.DEFAULT_TTL;
 
 public class TinyUrlService {
 
+    /**
+     * Both directions of the short/long mapping; {@link DataStore} keeps objects in maps, {@link CompactUrlStore}
+     * packs everything into a few large arrays.
+     */
+    interface UrlStore {
+        String getShortUrl(String longUrl);
+
+        /**
+         * @throws IllegalArgumentException if the code is malformed or unknown
+         */
+        String getLongUrl(String shortUrl);
+
+        /**
+         * Like {@link #getShortUrl(String)}, for a link that expires after {@code ttl} seconds without an access.
+         * Asking again for a live link keeps its code and sets the new TTL.
+         */
+        String getShortUrl(String longUrl, int ttl);
+    }
+
     static class URL {
+        private static final AtomicReferenceFieldUpdater<URL, LongAdder> HITS =
+                AtomicReferenceFieldUpdater.newUpdater(URL.class, LongAdder.class, "hits");
+
         private String longUrl;
         private String shortUrl;
-        private int ttl;
-        private int frequency;
-        private LocalDateTime updatedAt;
+        private volatile int ttl;
+        // hits since the last hot link refresh, null until the first one; striped, so concurrent redirects of one
+        // link do not contend
+        private volatile LongAdder hits;
+        // decayed hit count as of refresh number decayedAt; both only written by the refreshing thread
+        private volatile long frequency;
+        private int decayedAt;
+        // epoch seconds, good until 2038
+        private volatile int accessedAt;
+        private volatile boolean expired;
+        // guarded by the URL's ExpiryIndex stripe
+        private int filedBucket;
 
         public static final int DEFAULT_TTL = 60;
         public URL(String longUrl, String shortUrl, int ttl) {
             this.longUrl = longUrl;
             this.shortUrl = shortUrl;
             this.ttl = ttl;
-            this.frequency = 1;
-            this.updatedAt = LocalDateTime.now();
+            this.accessedAt = epochSecond();
+        }
+
+        static int epochSecond() {
+            return (int) (System.currentTimeMillis() / 1000);
         }
 
         public String getLongUrl() {
@@ -44,6 +86,9 @@ public class TinyUrlService {
             this.shortUrl = shortUrl;
         }
 
+        /**
+         * Seconds without an access after which the link expires.
+         */
         public int getTtl() {
             return ttl;
         }
@@ -52,117 +97,592 @@ public class TinyUrlService {
             this.ttl = ttl;
         }
 
-        public int getFrequency() {
+        /**
+         * Hit count as of the last refresh that looked at this link, plus the hits since.
+         */
+        public long getFrequency() {
+            final LongAdder current = hits;
+            return frequency + (current == null ? 0 : current.sum());
+        }
+
+        /**
+         * Returns true for the first hit since the last refresh, which the caller must register with the refresher.
+         */
+        public boolean recordAccess() {
+            while (true) {
+                final LongAdder current = hits;
+                if (current != null) {
+                    current.increment();
+                    return false;
+                }
+                final LongAdder first = new LongAdder();
+                first.increment();
+                if (HITS.compareAndSet(this, null, first)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Count as of refresh number {@code refresh}: shifted right by {@code decayShift} for every refresh since
+         * the last call to {@link #decay}, which is how links nobody used are decayed without being visited.
+         */
+        long frequencyAt(int refresh, int decayShift) {
+            final long shift = (long) (refresh - decayedAt) * decayShift;
+            return shift >= Long.SIZE ? 0 : frequency >> shift;
+        }
+
+        /**
+         * Decays the count to refresh number {@code refresh}, adds the hits since the last call and returns it.
+         * A hit racing with the call may go uncounted.
+         */
+        long decay(int refresh, int decayShift) {
+            final LongAdder taken = HITS.getAndSet(this, null);
+            frequency = frequencyAt(refresh, decayShift) + (taken == null ? 0 : taken.sum());
+            decayedAt = refresh;
             return frequency;
         }
 
-        public void setFrequency(int frequency) {
-            this.frequency = frequency;
+        public int getAccessedAt() {
+            return accessedAt;
+        }
+
+        /**
+         * Records an access at {@code now}, in epoch seconds. Most hits land in the same second as the previous one
+         * and write nothing.
+         */
+        public void touch(int now) {
+            if (accessedAt != now) {
+                accessedAt = now;
+            }
+        }
+
+        /**
+         * In epoch seconds; a long, since any TTL up to {@code Integer.MAX_VALUE} is allowed.
+         */
+        public long getExpiresAt() {
+            return (long) accessedAt + ttl;
+        }
+
+        /**
+         * True once the link has been removed, or is past its expiry and only waiting for cleanup.
+         */
+        public boolean isExpired(int now) {
+            return expired || now >= getExpiresAt();
+        }
+    }
+
+    /**
+     * URLs filed by the second they expire, in {@link #BUCKET_SECONDS} wide buckets, so cleanup only looks at the
+     * buckets that came due. An access does not touch the index: when a bucket comes due, the URLs in it that were
+     * used in the meantime are filed again under their new expiry.
+     *
+     * <p>URLs are hashed to one of {@code STRIPES} independently locked bucket maps, so shortens on different links
+     * do not queue on one monitor. A URL always lands in the same stripe, whose lock guards its filed bucket.
+     */
+    static class ExpiryIndex {
+        static final int BUCKET_SECONDS = 5;
+        static final int STRIPES = 16;
+
+        private final Stripe[] stripes;
+
+        ExpiryIndex() {
+            this.stripes = new Stripe[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        /**
+         * Files the URL under its current expiry. A URL filed earlier is only taken from its latest bucket.
+         */
+        void add(final URL url) {
+            final int hash = System.identityHashCode(url);
+            stripes[(hash ^ hash >>> 16) & (STRIPES - 1)].add(url);
+        }
+
+        /**
+         * Takes out every bucket that ended by {@code now}.
+         */
+        List<URL> pollDue(final int now) {
+            final List<URL> due = new ArrayList<>();
+            for (Stripe stripe : stripes) {
+                stripe.pollDue(now / BUCKET_SECONDS, due);
+            }
+            return due;
+        }
+
+        int bucketCount() {
+            int count = 0;
+            for (Stripe stripe : stripes) {
+                count += stripe.bucketCount();
+            }
+            return count;
         }
 
-        public LocalDateTime getUpdatedAt() {
-            return updatedAt;
+        static class Stripe {
+            private final TreeMap<Integer, List<URL>> buckets = new TreeMap<>();
+
+            synchronized void add(final URL url) {
+                // two ints over BUCKET_SECONDS always fit back in an int
+                final int bucket = (int) ((url.getExpiresAt() + BUCKET_SECONDS - 1) / BUCKET_SECONDS);
+                if (url.filedBucket == bucket) {
+                    return;
+                }
+                url.filedBucket = bucket;
+                buckets.computeIfAbsent(bucket, b -> new ArrayList<>()).add(url);
+            }
+
+            synchronized void pollDue(final int lastBucket, final List<URL> due) {
+                while (!buckets.isEmpty() && buckets.firstKey() <= lastBucket) {
+                    final Map.Entry<Integer, List<URL>> bucket = buckets.pollFirstEntry();
+                    for (URL url : bucket.getValue()) {
+                        if (url.filedBucket == bucket.getKey()) {
+                            due.add(url);
+                        }
+                    }
+                }
+            }
+
+            synchronized int bucketCount() {
+                return buckets.size();
+            }
         }
+    }
 
-        public void setUpdatedAt(LocalDateTime updatedAt) {
-            this.updatedAt = updatedAt;
+    /**
+     * Immutable open-addressing table of the most used links, rebuilt from the hit counts and swapped in whole.
+     * Reading takes no lock and writes nothing: a hash, a probe over one array and the URL itself.
+     */
+    static class HotLinks {
+        static final HotLinks EMPTY = new HotLinks(Collections.emptyList());
+
+        private final String[] codes;
+        private final URL[] urls;
+        private final int mask;
+
+        HotLinks(final List<URL> links) {
+            int capacity = 2;
+            while (capacity < links.size() * 2) {
+                capacity <<= 1;
+            }
+            codes = new String[capacity];
+            urls = new URL[capacity];
+            mask = capacity - 1;
+            for (URL url : links) {
+                int slot = spread(url.getShortUrl().hashCode()) & mask;
+                while (codes[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                codes[slot] = url.getShortUrl();
+                urls[slot] = url;
+            }
+        }
+
+        URL get(final String shortUrl) {
+            for (int slot = spread(shortUrl.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+                final String code = codes[slot];
+                if (code == null) {
+                    return null;
+                }
+                if (code.equals(shortUrl)) {
+                    return urls[slot];
+                }
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (String code : codes) {
+                size += code == null ? 0 : 1;
+            }
+            return size;
+        }
+
+        private static int spread(final int hash) {
+            return hash ^ hash >>> 16;
         }
     }
 
-    static class DataStore {
+    static class DataStore implements UrlStore {
+        static final int DEFAULT_HOT_LINKS = 1024;
+        /** Halves the counts at every refresh, so the hot links are the ones used lately. */
+        static final int DEFAULT_DECAY_SHIFT = 1;
+        static final int HOT_LINK_REFRESH_SECONDS = 5;
+
         final Map<String, URL> shortUrlMap;
         final Map<String, URL> longUrlMap;
-        final AtomicLong idCounter;
+        final ExpiryIndex expiryIndex;
+        final ShortCodeIdAllocator idAllocator;
         final ScheduledExecutorService scheduledExecutorService;
+        private final int hotLinkCapacity;
+        private final int decayShift;
+        private volatile HotLinks hotLinks;
+        // links hit since the last refresh, each queued once by its first hit
+        private final Queue<URL> touched;
+        // refresher thread only
+        private int refreshes;
 
         public DataStore() {
+            this(new ShortCodeIdAllocator());
+        }
+
+        /**
+         * Pass an allocator with shard bits or a scramble key to get non-sequential codes, or codes that several
+         * nodes can hand out independently.
+         */
+        public DataStore(final ShortCodeIdAllocator idAllocator) {
+            this(idAllocator, DEFAULT_HOT_LINKS, DEFAULT_DECAY_SHIFT);
+        }
+
+        /**
+         * Keeps the {@code hotLinkCapacity} most used codes in a lock-free table, 0 for none. {@code decayShift} 0
+         * counts every hit forever, 1 halves the counts at each refresh, and so on.
+         */
+        public DataStore(final ShortCodeIdAllocator idAllocator, final int hotLinkCapacity, final int decayShift) {
+            if (hotLinkCapacity < 0 || decayShift < 0 || decayShift > 63) {
+                throw new IllegalArgumentException("Invalid hot link capacity " + hotLinkCapacity + " or decay shift "
+                        + decayShift);
+            }
+            this.hotLinkCapacity = hotLinkCapacity;
+            this.decayShift = decayShift;
+            this.hotLinks = HotLinks.EMPTY;
+            this.touched = new ConcurrentLinkedQueue<>();
             shortUrlMap = new ConcurrentHashMap<>();
             longUrlMap = new ConcurrentHashMap<>();
-            idCounter = new AtomicLong();
+            expiryIndex = new ExpiryIndex();
+            this.idAllocator = idAllocator;
             scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
-            this.scheduledExecutorService.scheduleWithFixedDelay(this::scheduledCleanup, 0, DEFAULT_TTL, TimeUnit.SECONDS);
+            this.scheduledExecutorService.scheduleWithFixedDelay(this::scheduledCleanup, ExpiryIndex.BUCKET_SECONDS,
+                    ExpiryIndex.BUCKET_SECONDS, TimeUnit.SECONDS);
+            this.scheduledExecutorService.scheduleWithFixedDelay(this::refreshHotLinks, HOT_LINK_REFRESH_SECONDS,
+                    HOT_LINK_REFRESH_SECONDS, TimeUnit.SECONDS);
         }
 
+        @Override
         public String getShortUrl(final String longUrl) {
-            if(longUrlMap.containsKey(longUrl)) {
-                final URL url = longUrlMap.get(longUrl);
-                url.setUpdatedAt(LocalDateTime.now());
-                url.setFrequency(url.getFrequency() + 1);
-                longUrlMap.put(longUrl, url);
-                return url.getShortUrl();
-            }
-
-            final String shortUrl = Base62Service.encode(idCounter.incrementAndGet());
-            final URL url = new URL(longUrl, shortUrl, DEFAULT_TTL);
-            shortUrlMap.put(shortUrl, url);
-            longUrlMap.put(longUrl, url);
-            return shortUrl;
+            return getShortUrl(longUrl, DEFAULT_TTL);
         }
 
+        @Override
+        public String getShortUrl(final String longUrl, final int ttl) {
+            if (ttl < 1) {
+                throw new IllegalArgumentException("Invalid ttl " + ttl);
+            }
+            final int now = URL.epochSecond();
+            final URL existing = longUrlMap.get(longUrl);
+            if (existing != null && !existing.isExpired(now)) {
+                existing.touch(now);
+                recordAccess(existing);
+                if (existing.getTtl() != ttl) {
+                    existing.setTtl(ttl);
+                    expiryIndex.add(existing);
+                }
+                return existing.getShortUrl();
+            }
+
+            // an expired link still in the maps is replaced, both maps at once
+            final URL[] created = new URL[1];
+            final URL url = longUrlMap.compute(longUrl, (key, current) -> {
+                if (current != null && !current.isExpired(now)) {
+                    return current;
+                }
+                if (current != null) {
+                    // not expire(): this mapping is being replaced, and compute must not remove it itself
+                    current.expired = true;
+                    shortUrlMap.remove(current.getShortUrl(), current);
+                }
+                created[0] = new URL(key, Base62Service.encode(idAllocator.nextId()), ttl);
+                shortUrlMap.put(created[0].getShortUrl(), created[0]);
+                return created[0];
+            });
+            if (created[0] == url) {
+                // outside compute, so the index lock is never taken while holding the map's bin lock
+                expiryIndex.add(url);
+                recordAccess(url);
+            }
+            return url.getShortUrl();
+        }
+
+        @Override
         public String getLongUrl(final String shortUrl) {
-            if(!shortUrlMap.containsKey(shortUrl)) {
+            URL url = hotLinks.get(shortUrl);
+            if (url == null) {
+                url = shortUrlMap.get(shortUrl);
+            }
+            final int now = URL.epochSecond();
+            if (url == null || url.isExpired(now)) {
                 throw new IllegalArgumentException("Invalid shortUrl");
             }
-            final URL url = shortUrlMap.get(shortUrl);
-            url.setUpdatedAt(LocalDateTime.now());
-            url.setFrequency(url.getFrequency() + 1);
-            shortUrlMap.put(shortUrl, url);
+            url.touch(now);
+            recordAccess(url);
             return url.getLongUrl();
         }
 
-        private synchronized void scheduledCleanup() {
-            // iterate through longUrlMap
-           longUrlMap.entrySet()
-                   .removeIf(
-                           entry ->
-                                   entry.getValue().getUpdatedAt().isBefore(LocalDateTime.now().minusSeconds(DEFAULT_TTL)));
+        private void recordAccess(final URL url) {
+            if (url.recordAccess()) {
+                touched.offer(url);
+            }
+        }
 
-            //iterate through shortUrlMap
-            shortUrlMap.entrySet()
-                    .removeIf(
-                            entry ->
-                                    entry.getValue().getUpdatedAt().isBefore(LocalDateTime.now().minusSeconds(DEFAULT_TTL)));
+        int size() {
+            return shortUrlMap.size();
         }
 
+        int hotLinkCount() {
+            return hotLinks.size();
+        }
+
+        /**
+         * Keeps the top {@code hotLinkCapacity} live links with a min-heap. Only the current hot links and the links
+         * hit since the last refresh are looked at: every other link was at most the smallest hot count last time,
+         * has decayed by the same factor since, and so cannot have overtaken any of them.
+         */
+        private void refreshHotLinks() {
+            final int now = URL.epochSecond();
+            final int refresh = ++refreshes;
+            final List<URL> candidates = new ArrayList<>();
+            for (URL url : hotLinks.urls) {
+                if (url != null) {
+                    url.decay(refresh, decayShift);
+                    candidates.add(url);
+                }
+            }
+            // links registered after the mark wait for the next refresh, so a busy link cannot keep this loop going
+            final URL mark = new URL(null, null, 0);
+            touched.offer(mark);
+            for (URL url; (url = touched.poll()) != mark; ) {
+                final boolean seen = url.decayedAt == refresh;
+                url.decay(refresh, decayShift);
+                if (!seen) {
+                    candidates.add(url);
+                }
+            }
+            final PriorityQueue<URL> top = new PriorityQueue<>(hotLinkCapacity + 1,
+                    (a, b) -> Long.compare(a.frequency, b.frequency));
+            for (URL url : candidates) {
+                if (hotLinkCapacity > 0 && url.frequency > 0 && !url.isExpired(now)) {
+                    top.offer(url);
+                    if (top.size() > hotLinkCapacity) {
+                        top.poll();
+                    }
+                }
+            }
+            hotLinks = new HotLinks(new ArrayList<>(top));
+        }
+
+        private void scheduledCleanup() {
+            final int now = URL.epochSecond();
+            for (URL url : expiryIndex.pollDue(now)) {
+                if (url.isExpired(now)) {
+                    expire(url);
+                } else {
+                    expiryIndex.add(url);
+                }
+            }
+        }
+
+        /**
+         * The flag hides the link from both maps at once; the entries themselves go right after.
+         */
+        private void expire(final URL url) {
+            url.expired = true;
+            shortUrlMap.remove(url.getShortUrl(), url);
+            longUrlMap.remove(url.getLongUrl(), url);
+        }
     }
 
     static class URLService {
-        private final DataStore dataStore;
+        private final UrlStore dataStore;
 
         URLService() {
-            dataStore = new DataStore();
+            this(new DataStore());
+        }
+
+        URLService(final UrlStore dataStore) {
+            this.dataStore = dataStore;
         }
 
         public String getShortUrl(final String longUrl) {
             return dataStore.getShortUrl(longUrl);
         }
 
+        public String getShortUrl(final String longUrl, final int ttl) {
+            return dataStore.getShortUrl(longUrl, ttl);
+        }
+
         public String getLongUrl(final String shortUrl) {
            return dataStore.getLongUrl(shortUrl);
         }
     }
 
+    /**
+     * Base62 codes for non-negative longs, most significant digit first. Encoding writes straight into an array of
+     * the exact size and decoding is a table lookup per character, so a redirect does not scan the alphabet.
+     * Anything outside the alphabet, or a code too long for a long, is rejected instead of decoded into garbage.
+     */
     static class Base62Service {
         final static String ENCODE = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
         final static int CODE = 62;
+        /** Long.MAX_VALUE takes 11 digits. */
+        final static int MAX_LENGTH = 11;
+        private final static char[] DIGITS = ENCODE.toCharArray();
+        private final static byte[] VALUES = new byte[128];
+        // POWERS[i] = 62^i
+        private final static long[] POWERS = new long[MAX_LENGTH];
+
+        static {
+            Arrays.fill(VALUES, (byte) -1);
+            for (int i = 0; i < DIGITS.length; i++) {
+                VALUES[DIGITS[i]] = (byte) i;
+            }
+            POWERS[0] = 1;
+            for (int i = 1; i < MAX_LENGTH; i++) {
+                POWERS[i] = POWERS[i - 1] * CODE;
+            }
+        }
+
+        public static String encode(long counter) {
+            return new String(encodeToChars(counter, encodedLength(counter)));
+        }
 
-        public static String encode(Long counter) {
-            StringBuilder result = new StringBuilder();
-            while(counter > 0) {
-                int remainder = (int) (counter % CODE);
-                result.append(ENCODE.charAt(remainder));
-                counter = counter / CODE;
+        /**
+         * Left-pads with '0' to exactly {@code width} characters, so codes sort and compare like their values.
+         */
+        public static String encode(long counter, int width) {
+            if (width < encodedLength(counter)) {
+                throw new IllegalArgumentException(counter + " does not fit in " + width + " Base62 digits");
             }
+            return new String(encodeToChars(counter, width));
+        }
+
+        /**
+         * Writes the ASCII code of {@code counter} into {@code target} at {@code offset} and returns its length.
+         */
+        public static int encodeTo(long counter, byte[] target, int offset) {
+            final int length = encodedLength(counter);
+            writeDigits(counter, target, offset, length);
+            return length;
+        }
 
-            return result.reverse().toString();
+        public static int encodedLength(long counter) {
+            if (counter < 0) {
+                throw new IllegalArgumentException("Negative value " + counter);
+            }
+            int length = 1;
+            while (length < MAX_LENGTH && counter >= POWERS[length]) {
+                length++;
+            }
+            return length;
         }
 
-        public static long decode(String str) {
+        public static long decode(CharSequence str) {
+            final int length = str.length();
+            if (length == 0 || length > MAX_LENGTH) {
+                throw new IllegalArgumentException("Invalid Base62 code length " + length);
+            }
             long result = 0;
-            for (int i = 0; i < str.length(); i++) {
-                result = result * CODE + ENCODE.indexOf(str.charAt(i));
+            for (int i = 0; i < length; i++) {
+                result = accumulate(result, str.charAt(i), str);
             }
             return result;
         }
+
+        public static long decode(byte[] source, int offset, int length) {
+            if (length == 0 || length > MAX_LENGTH) {
+                throw new IllegalArgumentException("Invalid Base62 code length " + length);
+            }
+            long result = 0;
+            for (int i = offset; i < offset + length; i++) {
+                result = accumulate(result, (char) (source[i] & 0xff), null);
+            }
+            return result;
+        }
+
+        public static boolean isValid(CharSequence str) {
+            final int length = str.length();
+            if (length == 0 || length > MAX_LENGTH) {
+                return false;
+            }
+            long result = 0;
+            for (int i = 0; i < length; i++) {
+                final char c = str.charAt(i);
+                final int digit = c < 128 ? VALUES[c] : -1;
+                if (digit < 0 || result > (Long.MAX_VALUE - digit) / CODE) {
+                    return false;
+                }
+                result = result * CODE + digit;
+            }
+            return true;
+        }
+
+        public static String[] encodeAll(long[] counters) {
+            final String[] codes = new String[counters.length];
+            for (int i = 0; i < counters.length; i++) {
+                codes[i] = encode(counters[i]);
+            }
+            return codes;
+        }
+
+        public static long[] decodeAll(CharSequence[] codes) {
+            final long[] counters = new long[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                counters[i] = decode(codes[i]);
+            }
+            return counters;
+        }
+
+        /**
+         * Packs the codes back to back, {@code width} padded ASCII characters each, without creating any strings.
+         */
+        public static byte[] encodeAll(long[] counters, int width) {
+            final byte[] packed = new byte[counters.length * width];
+            for (int i = 0; i < counters.length; i++) {
+                if (width < encodedLength(counters[i])) {
+                    throw new IllegalArgumentException(counters[i] + " does not fit in " + width + " Base62 digits");
+                }
+                writeDigits(counters[i], packed, i * width, width);
+            }
+            return packed;
+        }
+
+        public static long[] decodeAll(byte[] packed, int width) {
+            if (width < 1 || packed.length % width != 0) {
+                throw new IllegalArgumentException("Packed length " + packed.length + " is not a multiple of " + width);
+            }
+            final long[] counters = new long[packed.length / width];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = decode(packed, i * width, width);
+            }
+            return counters;
+        }
+
+        private static char[] encodeToChars(long counter, int width) {
+            final char[] chars = new char[width];
+            for (int i = width - 1; i >= 0; i--) {
+                chars[i] = DIGITS[(int) (counter % CODE)];
+                counter /= CODE;
+            }
+            return chars;
+        }
+
+        private static void writeDigits(long counter, byte[] target, int offset, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                target[i] = (byte) DIGITS[(int) (counter % CODE)];
+                counter /= CODE;
+            }
+        }
+
+        private static long accumulate(long result, char c, CharSequence code) {
+            final int digit = c < 128 ? VALUES[c] : -1;
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid Base62 character '" + c + "'"
+                        + (code != null ? " in " + code : ""));
+            }
+            if (result > (Long.MAX_VALUE - digit) / CODE) {
+                throw new IllegalArgumentException("Base62 code out of range" + (code != null ? ": " + code : ""));
+            }
+            return result * CODE + digit;
+        }
     }
 }